@@ -12,10 +12,15 @@
 #   public *;
 #}
 
-# Uncomment this to preserve the line number information for
-# debugging stack traces.
-#-keepattributes SourceFile,LineNumberTable
+# Preserve the line number information for debugging stack traces.
+-keepattributes SourceFile,LineNumberTable
 
-# If you keep the line number information, uncomment this to
-# hide the original source file name.
-#-renamesourcefileattribute SourceFile
\ No newline at end of file
+# Hide the original source file name.
+-renamesourcefileattribute SourceFile
+
+# Entry points the system, the launcher and the macrobenchmarks reach by name. AAPT keeps
+# manifest components too; these keep the guarantee when full mode rewrites the rest.
+-keep class com.developer.harshul.pinvoke.CreditCardWidgetProvider { <init>(); }
+-keep class com.developer.harshul.pinvoke.CreditCardWidgetConfigActivity { <init>(); }
+-keep class com.developer.harshul.pinvoke.CardWidgetService { <init>(); }
+-keep class com.developer.harshul.pinvoke.MainActivity { <init>(); }
\ No newline at end of file
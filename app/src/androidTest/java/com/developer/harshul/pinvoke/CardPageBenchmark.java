@@ -0,0 +1,88 @@
+package com.developer.harshul.pinvoke;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.Log;
+import android.widget.FrameLayout;
+import android.widget.RemoteViews;
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Compares a text card page with a bitmap tile page from the launcher's side: the time
+ * {@code RemoteViews.apply} takes to inflate and bind one page, and the parcel size of each,
+ * logged under {@code CardPageBenchmark}. The pages are built directly, without the parcel budget
+ * that would send an oversized tile as text. Run with
+ * {@code ./gradlew :app:connectedDebugAndroidTest -Pandroid.testInstrumentationRunnerArguments.class=com.developer.harshul.pinvoke.CardPageBenchmark
+ * -Pandroid.testInstrumentationRunnerArguments.androidx.benchmark.suppressErrors=DEBUGGABLE};
+ * the app's other instrumented tests keep the default runner.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CardPageBenchmark {
+
+    private static final String TAG = "CardPageBenchmark";
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private Context context;
+    private CardViewState card;
+    private FrameLayout parent;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        long now = System.currentTimeMillis();
+        card = CardViewState.of(DisplayStateTable.get(context), "Chase Sapphire Preferred",
+                now + TimeUnit.DAYS.toMillis(5), now, SizeClass.WIDE);
+        parent = new FrameLayout(context);
+    }
+
+    @Test
+    public void textPage_apply() {
+        measureApply(false);
+    }
+
+    @Test
+    public void tilePage_apply() {
+        measureApply(true);
+    }
+
+    @Test
+    public void tilePage_drawUncached() {
+        CardTileRenderer tileRenderer = new CardTileRenderer(context);
+        BenchmarkState state = benchmarkRule.getState();
+        int day = 0;
+        while (state.keepRunning()) {
+            // A new count each time, so every tile misses the cache and is drawn.
+            tileRenderer.tile(new CardViewState(card.name, card.dueDate, String.valueOf(day++), card.daysLabel, card.dayColor, card.nightColor));
+        }
+    }
+
+    private void measureApply(boolean tiles) {
+        WidgetViewRenderer renderer = new WidgetViewRenderer(context);
+        RemoteViews views;
+        String size;
+        if (tiles) {
+            Bitmap tile = new CardTileRenderer(context).tile(card);
+            views = renderer.buildTile(card, tile);
+            size = WidgetViewRenderer.parcelSize(views) + " byte parcel plus a " + tile.getAllocationByteCount() + " byte bitmap";
+        } else {
+            views = renderer.buildText(card);
+            size = WidgetViewRenderer.parcelSize(views) + " byte parcel";
+        }
+        Log.i(TAG, (tiles ? "Tile" : "Text") + " page: " + size);
+
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            views.apply(context, parent);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.developer.harshul.pinvoke;
+
+import java.util.Arrays;
+
+/**
+ * Reusable, primitive-backed holder for one widget's cards. Callers keep an instance around and
+ * refill it on every update so the steady-state render path does not allocate.
+ */
+final class CardBuffer {
+
+    private static final int INITIAL_CAPACITY = 10;
+
+    String[] names = new String[INITIAL_CAPACITY];
+    long[] dueDates = new long[INITIAL_CAPACITY];
+    int[] order = new int[INITIAL_CAPACITY];
+    int size;
+
+    // One bit per card whose due date changed since it was loaded, so only those records are
+    // written back.
+    private long[] dirtyWords = new long[1];
+
+    void clear() {
+        Arrays.fill(names, 0, size, null);
+        clearDirty();
+        size = 0;
+    }
+
+    void add(String name, long dueDate) {
+        ensureCapacity(size + 1);
+        names[size] = name;
+        dueDates[size] = dueDate;
+        size++;
+    }
+
+    // Replaces this buffer's cards, sort order included, with a copy of other's.
+    void copyFrom(CardBuffer other) {
+        clear();
+        ensureCapacity(other.size);
+        System.arraycopy(other.names, 0, names, 0, other.size);
+        System.arraycopy(other.dueDates, 0, dueDates, 0, other.size);
+        System.arraycopy(other.order, 0, order, 0, other.size);
+        size = other.size;
+    }
+
+    void ensureCapacity(int capacity) {
+        if (capacity <= names.length) return;
+        int newCapacity = Math.max(capacity, names.length * 2);
+        names = Arrays.copyOf(names, newCapacity);
+        dueDates = Arrays.copyOf(dueDates, newCapacity);
+        order = Arrays.copyOf(order, newCapacity);
+        dirtyWords = Arrays.copyOf(dirtyWords, (newCapacity + 63) >>> 6);
+    }
+
+    void markDirty(int index) {
+        dirtyWords[index >>> 6] |= 1L << index;
+    }
+
+    boolean isDirty(int index) {
+        return (dirtyWords[index >>> 6] & (1L << index)) != 0;
+    }
+
+    boolean hasDirty() {
+        for (long word : dirtyWords) {
+            if (word != 0) return true;
+        }
+        return false;
+    }
+
+    void clearDirty() {
+        Arrays.fill(dirtyWords, 0L);
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Moves every overdue due date on to next month, marking those cards dirty, then sorts. Only
+    // order is permuted, so the dirty cards can still be written back by index afterwards.
+    // Returns whether any card rolled over.
+    boolean rollOverAndSort(long currentTime) {
+        for (int i = 0; i < size; i++) {
+            long updated = DateMath.updateOverdueDateToNextMonth(dueDates[i], currentTime);
+            if (updated != dueDates[i]) {
+                dueDates[i] = updated;
+                markDirty(i);
+            }
+        }
+        sortByDueDate();
+        return hasDirty();
+    }
+
+    // Stable insertion sort of indices by due date, matching the previous Collections.sort ordering.
+    void sortByDueDate() {
+        for (int i = 0; i < size; i++) {
+            int index = i;
+            long dueDate = dueDates[index];
+            int j = i - 1;
+            while (j >= 0 && dueDates[order[j]] > dueDate) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = index;
+        }
+    }
+}
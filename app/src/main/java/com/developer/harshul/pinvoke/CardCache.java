@@ -0,0 +1,76 @@
+package com.developer.harshul.pinvoke;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU of each widget's cards in store order, kept in front of {@link CardStore} so repeat
+ * loads (the engine and the flipper's adapter reading the same widget, or the render right after
+ * a save) are array copies instead of record reads.
+ *
+ * <p>Writes go through the store and then replace or drop the cached copy. Every write bumps
+ * {@link #version()}; a load that missed reads the version together with the records and only
+ * caches them if no write happened in between, so a slow reader cannot reinstate stale cards.
+ */
+final class CardCache {
+
+    private final int maxWidgets;
+    private final LinkedHashMap<Integer, Snapshot> entries;
+    private long version;
+
+    CardCache(int maxWidgets) {
+        this.maxWidgets = maxWidgets;
+        this.entries = new LinkedHashMap<Integer, Snapshot>(maxWidgets, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Snapshot> eldest) {
+                return size() > CardCache.this.maxWidgets;
+            }
+        };
+    }
+
+    synchronized boolean get(int appWidgetId, CardBuffer out) {
+        Snapshot snapshot = entries.get(appWidgetId);
+        if (snapshot == null) {
+            WidgetMetrics.increment(WidgetMetrics.CACHE_MISSES);
+            return false;
+        }
+        out.clear();
+        out.ensureCapacity(snapshot.names.length);
+        for (int i = 0; i < snapshot.names.length; i++) {
+            out.add(snapshot.names[i], snapshot.dueDates[i]);
+        }
+        WidgetMetrics.increment(WidgetMetrics.CACHE_HITS);
+        return true;
+    }
+
+    synchronized long version() {
+        return version;
+    }
+
+    synchronized void putIfCurrent(int appWidgetId, CardBuffer cards, long loadedVersion) {
+        if (loadedVersion == version) {
+            entries.put(appWidgetId, new Snapshot(cards));
+        }
+    }
+
+    synchronized void update(int appWidgetId, CardBuffer cards) {
+        version++;
+        entries.put(appWidgetId, new Snapshot(cards));
+    }
+
+    synchronized void remove(int appWidgetId) {
+        version++;
+        entries.remove(appWidgetId);
+    }
+
+    private static final class Snapshot {
+        final String[] names;
+        final long[] dueDates;
+
+        Snapshot(CardBuffer cards) {
+            names = Arrays.copyOf(cards.names, cards.size);
+            dueDates = Arrays.copyOf(cards.dueDates, cards.size);
+        }
+    }
+}
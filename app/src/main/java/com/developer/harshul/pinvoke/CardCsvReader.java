@@ -0,0 +1,164 @@
+package com.developer.harshul.pinvoke;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Streaming decoder for exported card rows, {@code widget_id,name,due_date} with RFC 4180
+ * quoting. Like {@link CardJsonReader} it reads through a fixed char buffer, so a file of any
+ * length is decoded in constant memory. The header row and blank lines are skipped, extra columns
+ * are ignored, and due dates may be epoch milliseconds or {@code yyyy-MM-dd}. Names are returned as
+ * written and left for the caller to normalize. A row that cannot be
+ * decoded is returned with {@link #valid} false; broken quoting is reported as
+ * {@link IOException}.
+ */
+final class CardCsvReader {
+
+    static final String HEADER = "widget_id,name,due_date";
+
+    private static final int COLUMNS = 3;
+
+    private final Reader in;
+    private final char[] buffer = new char[8192];
+    private int position;
+    private int limit;
+    private int row;
+
+    private final StringBuilder field = new StringBuilder(64);
+    private final String[] fields = new String[COLUMNS];
+
+    int widgetId;
+    String name;
+    long dueDate;
+    boolean valid;
+
+    CardCsvReader(Reader in) {
+        this.in = in;
+    }
+
+    // Reads the next row into widgetId/name/dueDate. Returns false at the end of the input.
+    boolean nextRow() throws IOException {
+        while (true) {
+            int count = readRecord();
+            if (count < 0) {
+                return false;
+            }
+            row++;
+            if (count == 1 && fields[0].trim().isEmpty()) {
+                continue;
+            }
+            if (row == 1 && "widget_id".equals(fields[0].trim())) {
+                continue;
+            }
+            decode(count);
+            return true;
+        }
+    }
+
+    private void decode(int count) {
+        valid = false;
+        widgetId = CardJsonReader.NO_WIDGET;
+        name = null;
+        dueDate = 0;
+        if (count < COLUMNS) {
+            return;
+        }
+        try {
+            widgetId = Integer.parseInt(fields[0].trim());
+        } catch (NumberFormatException e) {
+            return;
+        }
+        name = fields[1];
+        String date = fields[2].trim();
+        try {
+            dueDate = Long.parseLong(date);
+        } catch (NumberFormatException e) {
+            dueDate = DateMath.parseIsoDate(date);
+            if (dueDate == Long.MIN_VALUE) {
+                return;
+            }
+        }
+        valid = true;
+    }
+
+    // Reads one record into fields and returns how many fields it had, or -1 at end of input.
+    private int readRecord() throws IOException {
+        if (peek() == -1) {
+            return -1;
+        }
+        int count = 0;
+        while (true) {
+            String value = readField();
+            if (count < COLUMNS) {
+                fields[count] = value;
+            }
+            count++;
+            int c = read();
+            if (c == ',') {
+                continue;
+            }
+            if (c == '\r' && peek() == '\n') {
+                read();
+            }
+            return count;
+        }
+    }
+
+    // Leaves the delimiter that ended the field unread.
+    private String readField() throws IOException {
+        field.setLength(0);
+        if (peek() != '"') {
+            while (true) {
+                int c = peek();
+                if (c == -1 || c == ',' || c == '\n' || c == '\r') {
+                    return field.toString();
+                }
+                field.append((char) read());
+            }
+        }
+
+        read();
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                throw new IOException("Unterminated quoted field in row " + (row + 1));
+            }
+            if (c == '"') {
+                if (peek() != '"') {
+                    break;
+                }
+                read();
+            }
+            field.append((char) c);
+        }
+        int c = peek();
+        if (c != -1 && c != ',' && c != '\n' && c != '\r') {
+            throw new IOException("Unexpected character after quoted field in row " + (row + 1));
+        }
+        return field.toString();
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++];
+    }
+
+    private boolean fill() throws IOException {
+        int count = in.read(buffer, 0, buffer.length);
+        if (count <= 0) {
+            return false;
+        }
+        position = 0;
+        limit = count;
+        return true;
+    }
+}
@@ -0,0 +1,168 @@
+package com.developer.harshul.pinvoke;
+
+import android.content.Context;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.Button;
+import android.widget.ImageButton;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+import com.google.android.material.textfield.TextInputEditText;
+import java.text.DateFormat;
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Rows of the config screen's card editor. Each row edits one {@link CardDraft} in place; adds and
+ * removals are submitted as a new list so {@link DiffUtil} only inserts or removes the affected
+ * rows.
+ */
+final class CardEditorAdapter extends ListAdapter<CardEditorAdapter.CardDraft, CardEditorAdapter.Holder> {
+
+    private static final Object PAYLOAD_REMOVABLE = new Object();
+
+    interface Listener {
+        void onPickDate(CardDraft draft);
+
+        void onRemove(CardDraft draft);
+    }
+
+    private final Context context;
+    private final Listener listener;
+    private final int minCards;
+    private final DateFormat dateFormat;
+    private final ArrayDeque<View> prewarmed = new ArrayDeque<>();
+    private boolean removable;
+
+    CardEditorAdapter(Context context, int minCards, Listener listener) {
+        super(DIFF_CALLBACK);
+        this.context = context;
+        this.minCards = minCards;
+        this.listener = listener;
+        this.dateFormat = android.text.format.DateFormat.getDateFormat(context);
+        setHasStableIds(true);
+    }
+
+    void updateDueDate(CardDraft draft, long dueDate) {
+        draft.dueDate = dueDate;
+        int position = getCurrentList().indexOf(draft);
+        if (position >= 0) {
+            notifyItemChanged(position);
+        }
+    }
+
+    // Rows inflated off the main thread before the list is bound; used ahead of a fresh inflate.
+    void prewarm(View row) {
+        prewarmed.add(row);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return getItem(position).id;
+    }
+
+    @Override
+    public Holder onCreateViewHolder(ViewGroup parent, int viewType) {
+        View view = prewarmed.poll();
+        if (view == null) {
+            view = LayoutInflater.from(parent.getContext()).inflate(R.layout.card_entry_item, parent, false);
+        }
+        return new Holder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(Holder holder, int position) {
+        CardDraft draft = getItem(position);
+        holder.draft = draft;
+        holder.cardNameEdit.setText(draft.name);
+        holder.dueDateButton.setText(context.getString(R.string.due_date_button_text, dateFormat.format(new Date(draft.dueDate))));
+        holder.removeButton.setVisibility(removable ? View.VISIBLE : View.GONE);
+    }
+
+    @Override
+    public void onBindViewHolder(Holder holder, int position, List<Object> payloads) {
+        if (payloads.size() == 1 && payloads.get(0) == PAYLOAD_REMOVABLE) {
+            holder.removeButton.setVisibility(removable ? View.VISIBLE : View.GONE);
+        } else {
+            onBindViewHolder(holder, position);
+        }
+    }
+
+    // Remove buttons only change when the count crosses minCards, so existing rows are touched
+    // at most once per crossing rather than on every add or remove.
+    @Override
+    public void onCurrentListChanged(List<CardDraft> previousList, List<CardDraft> currentList) {
+        boolean nowRemovable = currentList.size() > minCards;
+        if (nowRemovable != removable) {
+            removable = nowRemovable;
+            notifyItemRangeChanged(0, currentList.size(), PAYLOAD_REMOVABLE);
+        }
+    }
+
+    final class Holder extends RecyclerView.ViewHolder {
+        final TextInputEditText cardNameEdit;
+        final Button dueDateButton;
+        final ImageButton removeButton;
+        CardDraft draft;
+
+        Holder(View itemView) {
+            super(itemView);
+            cardNameEdit = itemView.findViewById(R.id.card_name_edit);
+            dueDateButton = itemView.findViewById(R.id.due_date_button);
+            removeButton = itemView.findViewById(R.id.remove_card_button);
+
+            cardNameEdit.addTextChangedListener(new TextWatcher() {
+                @Override
+                public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+                }
+
+                @Override
+                public void onTextChanged(CharSequence s, int start, int before, int count) {
+                }
+
+                @Override
+                public void afterTextChanged(Editable s) {
+                    if (draft != null) {
+                        draft.name = s.toString();
+                    }
+                }
+            });
+            dueDateButton.setOnClickListener(v -> {
+                if (draft != null) listener.onPickDate(draft);
+            });
+            removeButton.setOnClickListener(v -> {
+                if (draft != null) listener.onRemove(draft);
+            });
+        }
+    }
+
+    static final class CardDraft {
+        final long id;
+        String name;
+        long dueDate;
+
+        CardDraft(long id, String name, long dueDate) {
+            this.id = id;
+            this.name = name;
+            this.dueDate = dueDate;
+        }
+    }
+
+    // Drafts are edited in place and never copied, so the same draft always has the same contents.
+    private static final DiffUtil.ItemCallback<CardDraft> DIFF_CALLBACK = new DiffUtil.ItemCallback<CardDraft>() {
+        @Override
+        public boolean areItemsTheSame(CardDraft oldItem, CardDraft newItem) {
+            return oldItem.id == newItem.id;
+        }
+
+        @Override
+        public boolean areContentsTheSame(CardDraft oldItem, CardDraft newItem) {
+            return oldItem == newItem;
+        }
+    };
+}
@@ -0,0 +1,267 @@
+package com.developer.harshul.pinvoke;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Streaming decoder for the {@code [{"name": ..., "dueDate": ...}, ...]} card schema. It reads
+ * straight from a {@link Reader} into a {@link CardBuffer} without building a JSON tree, and
+ * treats odd values the way {@code JSONObject.optString}/{@code optLong} did: missing or
+ * unconvertible fields fall back to defaults, non-object array elements are skipped, and unknown
+ * keys are ignored. Syntax errors are reported as {@link IOException}.
+ */
+final class CardJsonReader {
+
+    private static final int NO_CHAR = -2;
+    // Same value as AppWidgetManager.INVALID_APPWIDGET_ID, which this class cannot reference.
+    static final int NO_WIDGET = 0;
+
+    private final Reader in;
+    private final char[] buffer = new char[1024];
+    private int position;
+    private int limit;
+    private int peeked = NO_CHAR;
+
+    private final StringBuilder scratch = new StringBuilder(64);
+
+    String name;
+    long dueDate;
+    // Only present in exports, which list the cards of several widgets in one array.
+    int widgetId;
+
+    CardJsonReader(Reader in) {
+        this.in = in;
+    }
+
+    static int readAll(Reader in, CardBuffer out, String defaultName, long defaultDueDate) throws IOException {
+        out.clear();
+        CardJsonReader reader = new CardJsonReader(in);
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (reader.nextCard(defaultName, defaultDueDate)) {
+                out.add(reader.name, reader.dueDate);
+            }
+        }
+        reader.endArray();
+        return out.size;
+    }
+
+    void beginArray() throws IOException {
+        expect('[');
+    }
+
+    boolean hasNext() throws IOException {
+        int c = peekNonWhitespace();
+        if (c == ',') {
+            read();
+            c = peekNonWhitespace();
+        }
+        return c != ']' && c != -1;
+    }
+
+    void endArray() throws IOException {
+        expect(']');
+    }
+
+    // Decodes the next array element into name/dueDate/widgetId. Returns false (after consuming it) if
+    // the element is not an object.
+    boolean nextCard(String defaultName, long defaultDueDate) throws IOException {
+        if (peekNonWhitespace() != '{') {
+            skipValue();
+            return false;
+        }
+
+        read();
+        name = defaultName;
+        dueDate = defaultDueDate;
+        widgetId = NO_WIDGET;
+        boolean first = true;
+        while (true) {
+            int c = peekNonWhitespace();
+            if (c == '}') {
+                read();
+                return true;
+            }
+            if (!first) {
+                expect(',');
+            }
+            first = false;
+
+            String key = readString();
+            expect(':');
+            if ("name".equals(key)) {
+                String value = readValueAsString();
+                name = value != null ? value : defaultName;
+            } else if ("dueDate".equals(key)) {
+                dueDate = readValueAsLong(defaultDueDate);
+            } else if ("widgetId".equals(key)) {
+                widgetId = (int) readValueAsLong(NO_WIDGET);
+            } else {
+                skipValue();
+            }
+        }
+    }
+
+    // optString semantics: strings as-is, other scalars via their text, null as "null".
+    private String readValueAsString() throws IOException {
+        int c = peekNonWhitespace();
+        if (c == '"') {
+            return readString();
+        }
+        if (c == '{' || c == '[') {
+            skipValue();
+            return null;
+        }
+        return readLiteral();
+    }
+
+    // optLong semantics: integral numbers directly, fractional numbers and numeric strings via
+    // double truncation, anything else falls back.
+    private long readValueAsLong(long fallback) throws IOException {
+        int c = peekNonWhitespace();
+        String text;
+        if (c == '"') {
+            text = readString();
+        } else if (c == '{' || c == '[') {
+            skipValue();
+            return fallback;
+        } else {
+            text = readLiteral();
+        }
+
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            try {
+                return (long) Double.parseDouble(text);
+            } catch (NumberFormatException ignored) {
+                return fallback;
+            }
+        }
+    }
+
+    private String readString() throws IOException {
+        expect('"');
+        scratch.setLength(0);
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                throw new IOException("Unterminated string");
+            }
+            if (c == '"') {
+                return scratch.toString();
+            }
+            if (c == '\\') {
+                c = read();
+                switch (c) {
+                    case 'b': scratch.append('\b'); break;
+                    case 'f': scratch.append('\f'); break;
+                    case 'n': scratch.append('\n'); break;
+                    case 'r': scratch.append('\r'); break;
+                    case 't': scratch.append('\t'); break;
+                    case 'u': scratch.append(readUnicodeEscape()); break;
+                    case -1: throw new IOException("Unterminated escape");
+                    default: scratch.append((char) c); break;
+                }
+            } else {
+                scratch.append((char) c);
+            }
+        }
+    }
+
+    private char readUnicodeEscape() throws IOException {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(read(), 16);
+            if (digit < 0) {
+                throw new IOException("Invalid unicode escape");
+            }
+            value = (value << 4) | digit;
+        }
+        return (char) value;
+    }
+
+    private String readLiteral() throws IOException {
+        scratch.setLength(0);
+        while (true) {
+            int c = peek();
+            if (c == -1 || c == ',' || c == '}' || c == ']' || c == ':' || Character.isWhitespace(c)) {
+                break;
+            }
+            scratch.append((char) read());
+        }
+        if (scratch.length() == 0) {
+            throw new IOException("Expected a value");
+        }
+        return scratch.toString();
+    }
+
+    private void skipValue() throws IOException {
+        int c = peekNonWhitespace();
+        if (c == '"') {
+            readString();
+        } else if (c == '{' || c == '[') {
+            int close = c == '{' ? '}' : ']';
+            read();
+            while (true) {
+                int next = peekNonWhitespace();
+                if (next == close) {
+                    read();
+                    return;
+                }
+                if (next == -1) {
+                    throw new IOException("Unterminated container");
+                }
+                if (next == ',' || next == ':') {
+                    read();
+                } else {
+                    skipValue();
+                }
+            }
+        } else {
+            readLiteral();
+        }
+    }
+
+    private void expect(char expected) throws IOException {
+        int c = peekNonWhitespace();
+        if (c != expected) {
+            throw new IOException("Expected '" + expected + "' but found " + (c == -1 ? "end of input" : "'" + (char) c + "'"));
+        }
+        read();
+    }
+
+    private int peekNonWhitespace() throws IOException {
+        int c = peek();
+        while (c != -1 && Character.isWhitespace(c)) {
+            read();
+            c = peek();
+        }
+        return c;
+    }
+
+    private int peek() throws IOException {
+        if (peeked == NO_CHAR) {
+            peeked = nextChar();
+        }
+        return peeked;
+    }
+
+    private int read() throws IOException {
+        int c = peek();
+        peeked = NO_CHAR;
+        return c;
+    }
+
+    private int nextChar() throws IOException {
+        if (position == limit) {
+            limit = in.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++];
+    }
+}
@@ -0,0 +1,506 @@
+package com.developer.harshul.pinvoke;
+
+import android.appwidget.AppWidgetManager;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+import android.util.SparseArray;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Memory-mapped log of fixed-width card records shared by every widget instance.
+ *
+ * <p>Layout: a 16 byte header followed by {@link #RECORD_SIZE} byte records of
+ * {@code [int widgetId][short position][short nameLength][long dueDate][char[NAME_CAPACITY] name]}.
+ * A record whose widget id is {@link AppWidgetManager#INVALID_APPWIDGET_ID} is free for reuse.
+ */
+final class CardStore {
+
+    private static final String TAG = "CardStore";
+    private static final String FILE_NAME = "cards.store";
+    private static final String LEGACY_PREFS_NAME = "CCWidgetPrefs";
+    private static final String LEGACY_CARDS_DATA_KEY = "cards_data";
+
+    private static final int MAGIC = 0x43435731; // "CCW1"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int OFFSET_RECORD_COUNT = 8;
+
+    static final int NAME_CAPACITY = 40;
+    // Most cards a widget can hold, whether edited on the configure screen or imported.
+    static final int MAX_CARDS_PER_WIDGET = 10;
+    private static final int RECORD_SIZE = 16 + NAME_CAPACITY * 2;
+    private static final int OFFSET_WIDGET_ID = 0;
+    private static final int OFFSET_POSITION = 4;
+    private static final int OFFSET_NAME_LENGTH = 6;
+    private static final int OFFSET_DUE_DATE = 8;
+    private static final int OFFSET_NAME = 16;
+    private static final int GROWTH_RECORDS = 32;
+    private static final int CACHED_WIDGETS = 16;
+
+    private static CardStore instance;
+
+    private File file;
+    private RandomAccessFile randomAccessFile;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int recordCount;
+
+    private final SparseArray<int[]> slotsByWidget = new SparseArray<>();
+    private String[] nameCache = new String[0];
+    private final char[] nameScratch = new char[NAME_CAPACITY];
+    private final CardCache cache = new CardCache(CACHED_WIDGETS);
+    private final DueIndex dueIndex = new DueIndex();
+    // Set by rollover patches until the next flush() syncs them to disk.
+    private boolean unflushed;
+
+    static synchronized CardStore getInstance(Context context) {
+        if (instance == null) {
+            Context appContext = context.getApplicationContext();
+            instance = new CardStore(new File(appContext.getFilesDir(), FILE_NAME));
+            instance.open(appContext);
+        }
+        return instance;
+    }
+
+    // Unmaps the shared store so the next getInstance() opens the file again, as a new process would.
+    static synchronized void release() {
+        if (instance != null) {
+            synchronized (instance) {
+                instance.close();
+            }
+            instance = null;
+        }
+    }
+
+    private CardStore(File file) {
+        this.file = file;
+    }
+
+    int load(int appWidgetId, CardBuffer out) {
+        if (cache.get(appWidgetId, out)) {
+            return out.size;
+        }
+
+        long version;
+        synchronized (this) {
+            version = cache.version();
+            readRecords(appWidgetId, out);
+        }
+        cache.putIfCurrent(appWidgetId, out, version);
+        return out.size;
+    }
+
+    private void readRecords(int appWidgetId, CardBuffer out) {
+        out.clear();
+        int[] slots = slotsByWidget.get(appWidgetId);
+        if (slots == null || buffer == null) {
+            return;
+        }
+
+        out.ensureCapacity(slots.length);
+        for (int slot : slots) {
+            int base = recordOffset(slot);
+            out.add(readName(slot, base), buffer.getLong(base + OFFSET_DUE_DATE));
+        }
+    }
+
+    synchronized boolean save(int appWidgetId, CardBuffer cards) {
+        if (buffer == null || !writeCards(appWidgetId, cards)) {
+            return false;
+        }
+        buffer.force();
+        unflushed = false;
+        return true;
+    }
+
+    // Replaces the cards of every widget in cardsByWidget and syncs once. Room for all of them is
+    // reserved before anything is written, so a store that cannot grow leaves every widget as it
+    // was instead of applying part of the batch. Should a write still fail, the widgets already
+    // written are put back to their previous cards and the whole batch fails.
+    synchronized boolean saveAll(SparseArray<CardBuffer> cardsByWidget) {
+        if (buffer == null) {
+            return false;
+        }
+        int needed = 0;
+        for (int i = 0; i < cardsByWidget.size(); i++) {
+            int[] oldSlots = slotsByWidget.get(cardsByWidget.keyAt(i));
+            int size = cardsByWidget.valueAt(i).size;
+            if (oldSlots == null || oldSlots.length != size) {
+                needed += size;
+            }
+        }
+        if (!reserveSlots(needed)) {
+            return false;
+        }
+        SparseArray<CardBuffer> previous = new SparseArray<>(cardsByWidget.size());
+        for (int i = 0; i < cardsByWidget.size(); i++) {
+            CardBuffer cards = new CardBuffer();
+            readRecords(cardsByWidget.keyAt(i), cards);
+            previous.put(cardsByWidget.keyAt(i), cards);
+        }
+        boolean written = true;
+        for (int i = 0; i < cardsByWidget.size() && written; i++) {
+            written = writeCards(cardsByWidget.keyAt(i), cardsByWidget.valueAt(i));
+        }
+        if (!written) {
+            Log.e(TAG, "Error writing card batch, restoring " + previous.size() + " widgets");
+            for (int i = 0; i < previous.size(); i++) {
+                if (!writeCards(previous.keyAt(i), previous.valueAt(i))) {
+                    Log.e(TAG, "Could not restore cards for widget " + previous.keyAt(i));
+                }
+            }
+        }
+        buffer.force();
+        unflushed = false;
+        return written;
+    }
+
+    // New slots are claimed before the old ones are freed, so a store that cannot grow leaves the
+    // widget's existing cards as they were.
+    private boolean writeCards(int appWidgetId, CardBuffer cards) {
+        int[] oldSlots = slotsByWidget.get(appWidgetId);
+        int[] slots = (oldSlots != null && oldSlots.length == cards.size) ? oldSlots : null;
+        if (slots == null) {
+            slots = new int[cards.size];
+            for (int i = 0; i < cards.size; i++) {
+                int slot = allocateSlot(appWidgetId);
+                if (slot < 0) {
+                    for (int j = 0; j < i; j++) {
+                        freeSlot(slots[j]);
+                    }
+                    return false;
+                }
+                slots[i] = slot;
+            }
+        }
+
+        for (int i = 0; i < cards.size; i++) {
+            writeRecord(slots[i], appWidgetId, i, cards.names[i], cards.dueDates[i]);
+        }
+        if (oldSlots != null && oldSlots != slots) {
+            for (int slot : oldSlots) {
+                freeSlot(slot);
+            }
+        }
+
+        if (slots.length == 0) {
+            slotsByWidget.remove(appWidgetId);
+        } else {
+            slotsByWidget.put(appWidgetId, slots);
+        }
+        cache.update(appWidgetId, cards);
+        return true;
+    }
+
+    // Patches the due date of every card marked dirty in place. The buffer must hold the cards
+    // in the order load() returned them. Patches reach the page cache immediately, so they
+    // survive the process dying; syncing them to disk is left to flush() so that all widgets
+    // rolling over in one update pass share a single sync.
+    synchronized void writeDirtyDueDates(int appWidgetId, CardBuffer cards) {
+        int[] slots = slotsByWidget.get(appWidgetId);
+        if (slots == null || buffer == null) {
+            return;
+        }
+        int count = Math.min(slots.length, cards.size);
+        for (int i = 0; i < count; i++) {
+            if (cards.isDirty(i)) {
+                buffer.putLong(recordOffset(slots[i]) + OFFSET_DUE_DATE, cards.dueDates[i]);
+                dueIndex.put(slots[i], cards.dueDates[i]);
+                unflushed = true;
+            }
+        }
+        cards.clearDirty();
+        if (count == cards.size && count == slots.length) {
+            cache.update(appWidgetId, cards);
+        } else {
+            cache.remove(appWidgetId);
+        }
+    }
+
+    // Soonest card of any widget due at or after notBefore, or false if there is none.
+    synchronized boolean nextDue(long notBefore, CardBuffer out) {
+        out.clear();
+        int index = dueIndex.ceiling(notBefore);
+        if (buffer == null || index == dueIndex.size()) {
+            return false;
+        }
+        int slot = dueIndex.slot(index);
+        out.add(readName(slot, recordOffset(slot)), dueIndex.dueDate(index));
+        return true;
+    }
+
+    // Due dates of every stored card, ascending.
+    synchronized long[] dueDates() {
+        return dueIndex.dueDates();
+    }
+
+    // A due date is one aligned 8 byte write and rolling over is recomputed from the old date, so
+    // a patch lost to a crash before this runs is simply redone on the next update.
+    synchronized void flush() {
+        if (!unflushed || buffer == null) {
+            return;
+        }
+        long start = WidgetMetrics.begin(WidgetMetrics.STAGE_FLUSH);
+        try {
+            buffer.force();
+            unflushed = false;
+        } finally {
+            WidgetMetrics.end(WidgetMetrics.STAGE_FLUSH, start);
+        }
+    }
+
+    synchronized void delete(int appWidgetId) {
+        cache.remove(appWidgetId);
+        int[] slots = slotsByWidget.get(appWidgetId);
+        if (slots == null || buffer == null) {
+            return;
+        }
+        for (int slot : slots) {
+            freeSlot(slot);
+        }
+        slotsByWidget.remove(appWidgetId);
+    }
+
+    private void open(Context context) {
+        try {
+            if (file.exists()) {
+                map(file);
+                if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                    Log.w(TAG, "Unrecognised card store header, starting fresh");
+                    close();
+                    if (!file.delete()) {
+                        Log.w(TAG, "Could not delete unrecognised card store");
+                    }
+                    createAndMigrate(context);
+                    return;
+                }
+                indexRecords();
+            } else {
+                createAndMigrate(context);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Error opening card store", e);
+            close();
+        }
+    }
+
+    // One-time import of the per-widget CCWidgetPrefs<id> JSON blobs. The store is built under a
+    // temporary name and renamed into place, so its existence doubles as the "migrated" marker.
+    private void createAndMigrate(Context context) throws IOException {
+        File target = file;
+        File tmp = new File(target.getPath() + ".tmp");
+        if (tmp.exists() && !tmp.delete()) {
+            throw new IOException("Cannot delete stale " + tmp);
+        }
+
+        map(tmp);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(OFFSET_RECORD_COUNT, 0);
+
+        int[] appWidgetIds = AppWidgetManager.getInstance(context)
+                .getAppWidgetIds(new ComponentName(context, CreditCardWidgetProvider.class));
+        CardBuffer cards = new CardBuffer();
+        if (appWidgetIds != null) {
+            for (int appWidgetId : appWidgetIds) {
+                if (readLegacyCards(context, appWidgetId, cards)) {
+                    save(appWidgetId, cards);
+                }
+            }
+        }
+        buffer.force();
+
+        if (!tmp.renameTo(target)) {
+            throw new IOException("Cannot rename " + tmp + " to " + target);
+        }
+        file = target;
+
+        if (appWidgetIds != null) {
+            for (int appWidgetId : appWidgetIds) {
+                context.deleteSharedPreferences(LEGACY_PREFS_NAME + appWidgetId);
+            }
+        }
+    }
+
+    private static boolean readLegacyCards(Context context, int appWidgetId, CardBuffer out) {
+        out.clear();
+        SharedPreferences prefs = context.getSharedPreferences(LEGACY_PREFS_NAME + appWidgetId, Context.MODE_PRIVATE);
+        String cardsDataJson = prefs.getString(LEGACY_CARDS_DATA_KEY, "");
+        if (cardsDataJson == null || cardsDataJson.trim().isEmpty()) {
+            return false;
+        }
+
+        long start = WidgetMetrics.begin(WidgetMetrics.STAGE_PARSE);
+        try {
+            CardJsonReader.readAll(new StringReader(cardsDataJson), out, "Credit Card", CreditCardWidgetProvider.getDefaultDueDate());
+            return !out.isEmpty();
+        } catch (IOException e) {
+            Log.e(TAG, "Error migrating cards for widget " + appWidgetId, e);
+            return false;
+        } finally {
+            WidgetMetrics.end(WidgetMetrics.STAGE_PARSE, start);
+        }
+    }
+
+    private void map(File target) throws IOException {
+        randomAccessFile = new RandomAccessFile(target, "rw");
+        channel = randomAccessFile.getChannel();
+        long length = Math.max(randomAccessFile.length(), HEADER_SIZE + (long) GROWTH_RECORDS * RECORD_SIZE);
+        remap((int) length);
+    }
+
+    private void remap(int length) throws IOException {
+        if (randomAccessFile.length() < length) {
+            randomAccessFile.setLength(length);
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+        capacity = (length - HEADER_SIZE) / RECORD_SIZE;
+        if (nameCache.length < capacity) {
+            nameCache = Arrays.copyOf(nameCache, capacity);
+        }
+    }
+
+    private void close() {
+        buffer = null;
+        try {
+            if (randomAccessFile != null) {
+                randomAccessFile.close();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Error closing card store", e);
+        }
+        randomAccessFile = null;
+        channel = null;
+        slotsByWidget.clear();
+        dueIndex.clear();
+    }
+
+    private void indexRecords() {
+        recordCount = Math.min(buffer.getInt(OFFSET_RECORD_COUNT), capacity);
+        SparseArray<int[]> positions = new SparseArray<>();
+        for (int slot = 0; slot < recordCount; slot++) {
+            int base = recordOffset(slot);
+            int appWidgetId = buffer.getInt(base + OFFSET_WIDGET_ID);
+            if (appWidgetId == AppWidgetManager.INVALID_APPWIDGET_ID) continue;
+
+            dueIndex.put(slot, buffer.getLong(base + OFFSET_DUE_DATE));
+            int position = buffer.getShort(base + OFFSET_POSITION);
+            int[] slots = positions.get(appWidgetId);
+            if (slots == null) {
+                slots = new int[0];
+            }
+            if (position >= slots.length) {
+                int oldLength = slots.length;
+                slots = Arrays.copyOf(slots, position + 1);
+                Arrays.fill(slots, oldLength, slots.length, -1);
+            }
+            slots[position] = slot;
+            positions.put(appWidgetId, slots);
+        }
+
+        for (int i = 0; i < positions.size(); i++) {
+            int[] slots = positions.valueAt(i);
+            int count = 0;
+            for (int slot : slots) {
+                if (slot >= 0) slots[count++] = slot;
+            }
+            slotsByWidget.put(positions.keyAt(i), count == slots.length ? slots : Arrays.copyOf(slots, count));
+        }
+    }
+
+    // Claims a free slot for appWidgetId by writing the id into it straight away, so the next call
+    // does not hand out the same slot before its record is written.
+    private int allocateSlot(int appWidgetId) {
+        for (int slot = 0; slot < recordCount; slot++) {
+            int base = recordOffset(slot);
+            if (buffer.getInt(base + OFFSET_WIDGET_ID) == AppWidgetManager.INVALID_APPWIDGET_ID) {
+                buffer.putInt(base + OFFSET_WIDGET_ID, appWidgetId);
+                return slot;
+            }
+        }
+
+        if (recordCount == capacity) {
+            try {
+                remap(HEADER_SIZE + (capacity + GROWTH_RECORDS) * RECORD_SIZE);
+            } catch (IOException e) {
+                Log.e(TAG, "Error growing card store", e);
+                return -1;
+            }
+        }
+        int slot = recordCount++;
+        buffer.putInt(OFFSET_RECORD_COUNT, recordCount);
+        buffer.putInt(recordOffset(slot) + OFFSET_WIDGET_ID, appWidgetId);
+        return slot;
+    }
+
+    private boolean reserveSlots(int count) {
+        int free = capacity - recordCount;
+        for (int slot = 0; slot < recordCount && free < count; slot++) {
+            if (buffer.getInt(recordOffset(slot) + OFFSET_WIDGET_ID) == AppWidgetManager.INVALID_APPWIDGET_ID) {
+                free++;
+            }
+        }
+        if (free >= count) {
+            return true;
+        }
+        int growth = Math.max(GROWTH_RECORDS, count - free);
+        try {
+            remap(HEADER_SIZE + (capacity + growth) * RECORD_SIZE);
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "Error growing card store", e);
+            return false;
+        }
+    }
+
+    private void freeSlot(int slot) {
+        buffer.putInt(recordOffset(slot) + OFFSET_WIDGET_ID, AppWidgetManager.INVALID_APPWIDGET_ID);
+        nameCache[slot] = null;
+        dueIndex.remove(slot);
+    }
+
+    private void writeRecord(int slot, int appWidgetId, int position, String name, long dueDate) {
+        int base = recordOffset(slot);
+        String safeName = name != null ? name : "";
+        int nameLength = Math.min(safeName.length(), NAME_CAPACITY);
+
+        buffer.putInt(base + OFFSET_WIDGET_ID, appWidgetId);
+        buffer.putShort(base + OFFSET_POSITION, (short) position);
+        buffer.putShort(base + OFFSET_NAME_LENGTH, (short) nameLength);
+        buffer.putLong(base + OFFSET_DUE_DATE, dueDate);
+        for (int i = 0; i < nameLength; i++) {
+            buffer.putChar(base + OFFSET_NAME + i * 2, safeName.charAt(i));
+        }
+        nameCache[slot] = nameLength == safeName.length() ? safeName : safeName.substring(0, nameLength);
+        dueIndex.put(slot, dueDate);
+    }
+
+    // Names are decoded once per slot and then served from nameCache, so repeated loads of an
+    // unchanged widget hand out the same String instances.
+    private String readName(int slot, int base) {
+        String cached = nameCache[slot];
+        if (cached != null) {
+            return cached;
+        }
+        int nameLength = Math.min(buffer.getShort(base + OFFSET_NAME_LENGTH), NAME_CAPACITY);
+        for (int i = 0; i < nameLength; i++) {
+            nameScratch[i] = buffer.getChar(base + OFFSET_NAME + i * 2);
+        }
+        String name = new String(nameScratch, 0, nameLength);
+        nameCache[slot] = name;
+        return name;
+    }
+
+    private static int recordOffset(int slot) {
+        return HEADER_SIZE + slot * RECORD_SIZE;
+    }
+}
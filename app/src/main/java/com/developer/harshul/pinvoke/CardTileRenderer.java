@@ -0,0 +1,110 @@
+package com.developer.harshul.pinvoke;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.drawable.Drawable;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.widget.TextView;
+import androidx.core.content.ContextCompat;
+
+/**
+ * Draws a card page into a bitmap for wide widgets. The tile is the regular
+ * {@code widget_card_item} layout, inflated and laid out locally, drawn over
+ * {@code card_background}, so the launcher only has to show one image instead of inflating and
+ * measuring the nested text views. Tiles come from {@link TileCache} and are only drawn on a miss.
+ * A tile is drawn at a reduced scale when its full-size bitmap would not fit in
+ * {@code widget_tile_budget_bytes}, and a newly drawn tile is only cached once {@link #keep} says
+ * it is being sent. Not thread-safe; each {@link WidgetViewRenderer} owns one.
+ */
+final class CardTileRenderer {
+
+    private final Context context;
+    private final int width;
+    private final int height;
+    private final int inset;
+    private final float scale;
+    private final int tileWidth;
+    private final int tileHeight;
+    private final int nightMode;
+    private View item;
+    private TextView nameView;
+    private TextView dueDateView;
+    private TextView daysView;
+    private TextView daysLabelView;
+    private String drawnKey;
+    private Bitmap drawnTile;
+
+    CardTileRenderer(Context context) {
+        this.context = context;
+        this.width = context.getResources().getDimensionPixelSize(R.dimen.card_tile_width);
+        this.height = context.getResources().getDimensionPixelSize(R.dimen.card_tile_height);
+        this.inset = context.getResources().getDimensionPixelSize(R.dimen.spacing_xs);
+        int budget = context.getResources().getInteger(R.integer.widget_tile_budget_bytes);
+        // ARGB_8888, so four bytes a pixel.
+        this.scale = (float) Math.min(1.0, Math.sqrt(budget / (4.0 * width * height)));
+        this.tileWidth = Math.max(1, (int) (width * scale));
+        this.tileHeight = Math.max(1, (int) (height * scale));
+        this.nightMode = context.getResources().getConfiguration().uiMode & Configuration.UI_MODE_NIGHT_MASK;
+    }
+
+    // The cached tile for state, or a newly drawn one that is not cached until keep() is called.
+    Bitmap tile(CardViewState state) {
+        String key = TileCache.key(state, tileWidth, tileHeight, nightMode);
+        Bitmap bitmap = TileCache.getInstance(context).get(key);
+        if (bitmap == null) {
+            bitmap = draw(state);
+            drawnKey = key;
+            drawnTile = bitmap;
+        }
+        return bitmap;
+    }
+
+    // Caches the tile if tile() just drew it; a tile the caller does not send is never kept.
+    void keep(Bitmap tile) {
+        if (tile == drawnTile) {
+            TileCache.getInstance(context).put(drawnKey, tile);
+        }
+        drawnKey = null;
+        drawnTile = null;
+    }
+
+    private Bitmap draw(CardViewState state) {
+        long start = WidgetMetrics.begin(WidgetMetrics.STAGE_RASTERIZE);
+        try {
+            if (item == null) {
+                item = LayoutInflater.from(context).inflate(R.layout.widget_card_item, null, false);
+                nameView = item.findViewById(R.id.card_name);
+                dueDateView = item.findViewById(R.id.due_date);
+                daysView = item.findViewById(R.id.days_remaining);
+                daysLabelView = item.findViewById(R.id.days_label);
+            }
+            nameView.setText(state.name);
+            dueDateView.setText(state.dueDate);
+            daysView.setText(state.days);
+            daysView.setTextColor(state.color(nightMode == Configuration.UI_MODE_NIGHT_YES));
+            daysLabelView.setText(state.daysLabel);
+            item.measure(View.MeasureSpec.makeMeasureSpec(width - 2 * inset, View.MeasureSpec.EXACTLY),
+                    View.MeasureSpec.makeMeasureSpec(height - 2 * inset, View.MeasureSpec.EXACTLY));
+            item.layout(0, 0, width - 2 * inset, height - 2 * inset);
+
+            Bitmap bitmap = Bitmap.createBitmap(tileWidth, tileHeight, Bitmap.Config.ARGB_8888);
+            Canvas canvas = new Canvas(bitmap);
+            canvas.scale(scale, scale);
+            Drawable frame = ContextCompat.getDrawable(context, R.drawable.card_background);
+            if (frame != null) {
+                frame.setBounds(0, 0, width, height);
+                frame.draw(canvas);
+            }
+            canvas.translate(inset, inset);
+            item.draw(canvas);
+            WidgetMetrics.increment(WidgetMetrics.TILES_DRAWN);
+            WidgetMetrics.recordSize(WidgetMetrics.SIZE_TILE_BITMAP, bitmap.getAllocationByteCount());
+            return bitmap;
+        } finally {
+            WidgetMetrics.end(WidgetMetrics.STAGE_RASTERIZE, start);
+        }
+    }
+}
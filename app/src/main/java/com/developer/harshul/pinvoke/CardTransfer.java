@@ -0,0 +1,242 @@
+package com.developer.harshul.pinvoke;
+
+import android.appwidget.AppWidgetManager;
+import android.content.ComponentName;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.OpenableColumns;
+import android.util.Log;
+import android.util.SparseArray;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Moves the cards of every placed widget to and from a document picked through the Storage Access
+ * Framework, either as CSV ({@link CardCsvReader#HEADER}) or as a JSON array of
+ * {@code {"widgetId", "name", "dueDate"}} objects. Both directions stream through fixed-size
+ * buffers. An import keeps at most {@link CardStore#MAX_CARDS_PER_WIDGET} cards per placed
+ * widget, so its memory is bounded by the number of widgets rather than the length of the file,
+ * and the whole file is validated before {@link CardStore#saveAll} applies it in one write. Call
+ * off the main thread.
+ */
+final class CardTransfer {
+
+    private static final String TAG = "CardTransfer";
+
+    static final int FORMAT_CSV = 0;
+    static final int FORMAT_JSON = 1;
+
+    private static final int BUFFER_CHARS = 8192;
+    private static final int PROGRESS_INTERVAL_ROWS = 250;
+
+    interface ProgressListener {
+        void onProgress(int rows);
+    }
+
+    static final class Result {
+        int rows;
+        int imported;
+        int rejected;
+        int widgets;
+    }
+
+    private CardTransfer() {
+    }
+
+    static int export(Context context, Uri uri) throws IOException {
+        ContentResolver resolver = context.getContentResolver();
+        int format = formatOf(resolver, uri);
+        OutputStream stream = resolver.openOutputStream(uri, "wt");
+        if (stream == null) {
+            throw new IOException("Cannot open " + uri);
+        }
+
+        CardStore store = CardStore.getInstance(context);
+        CardBuffer cards = new CardBuffer();
+        int rows = 0;
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), BUFFER_CHARS)) {
+            out.write(format == FORMAT_CSV ? CardCsvReader.HEADER + "\n" : "[");
+            for (int appWidgetId : placedWidgetIds(context)) {
+                store.load(appWidgetId, cards);
+                for (int i = 0; i < cards.size; i++) {
+                    if (format == FORMAT_CSV) {
+                        writeCsvRow(out, appWidgetId, cards.names[i], cards.dueDates[i]);
+                    } else {
+                        writeJsonRow(out, rows == 0, appWidgetId, cards.names[i], cards.dueDates[i]);
+                    }
+                    rows++;
+                }
+            }
+            if (format == FORMAT_JSON) {
+                out.write("\n]\n");
+            }
+        }
+        return rows;
+    }
+
+    // Rows for widgets that are not placed, past the per-widget limit, with a name longer than the
+    // store keeps, or with an implausible due date are counted as rejected. Only widgets named in
+    // the file are changed.
+    static Result importCards(Context context, Uri uri, ProgressListener listener) throws IOException {
+        ContentResolver resolver = context.getContentResolver();
+        int format = formatOf(resolver, uri);
+        InputStream stream = resolver.openInputStream(uri);
+        if (stream == null) {
+            throw new IOException("Cannot open " + uri);
+        }
+
+        SparseArray<CardBuffer> cardsByWidget = new SparseArray<>();
+        for (int appWidgetId : placedWidgetIds(context)) {
+            cardsByWidget.put(appWidgetId, new CardBuffer());
+        }
+        String defaultName = context.getString(R.string.credit_card);
+        Result result = new Result();
+        try (Reader in = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8), BUFFER_CHARS)) {
+            if (format == FORMAT_CSV) {
+                readCsv(in, cardsByWidget, defaultName, result, listener);
+            } else {
+                readJson(in, cardsByWidget, defaultName, result, listener);
+            }
+        }
+
+        for (int i = cardsByWidget.size() - 1; i >= 0; i--) {
+            if (cardsByWidget.valueAt(i).isEmpty()) {
+                cardsByWidget.removeAt(i);
+            }
+        }
+        result.widgets = cardsByWidget.size();
+        if (result.widgets == 0) {
+            return result;
+        }
+        if (!CardStore.getInstance(context).saveAll(cardsByWidget)) {
+            throw new IOException("Not enough room in the card store");
+        }
+
+        int[] appWidgetIds = new int[cardsByWidget.size()];
+        for (int i = 0; i < appWidgetIds.length; i++) {
+            appWidgetIds[i] = cardsByWidget.keyAt(i);
+        }
+        WidgetUpdateQueue.getInstance().enqueue(context, appWidgetIds, null, null);
+        Log.d(TAG, "Imported " + result.imported + " cards into " + result.widgets + " widgets, rejected " + result.rejected);
+        return result;
+    }
+
+    private static void readCsv(Reader in, SparseArray<CardBuffer> cardsByWidget, String defaultName,
+                                Result result, ProgressListener listener) throws IOException {
+        CardCsvReader reader = new CardCsvReader(in);
+        long currentTime = WidgetClock.now();
+        while (reader.nextRow()) {
+            accept(cardsByWidget, reader.valid, reader.widgetId, reader.name, defaultName, reader.dueDate, currentTime, result, listener);
+        }
+    }
+
+    private static void readJson(Reader in, SparseArray<CardBuffer> cardsByWidget, String defaultName,
+                                 Result result, ProgressListener listener) throws IOException {
+        CardJsonReader reader = new CardJsonReader(in);
+        long currentTime = WidgetClock.now();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            // A card without a due date falls back to Long.MIN_VALUE and fails validation.
+            boolean valid = reader.nextCard(defaultName, Long.MIN_VALUE);
+            accept(cardsByWidget, valid, reader.widgetId, reader.name, defaultName, reader.dueDate, currentTime, result, listener);
+        }
+        reader.endArray();
+    }
+
+    private static void accept(SparseArray<CardBuffer> cardsByWidget, boolean valid, int appWidgetId, String rawName,
+                               String defaultName, long dueDate, long currentTime, Result result, ProgressListener listener) {
+        result.rows++;
+        CardBuffer cards = valid ? cardsByWidget.get(appWidgetId) : null;
+        String name = importedName(rawName, defaultName);
+        if (cards == null || cards.size >= CardStore.MAX_CARDS_PER_WIDGET || name == null
+                || !DateMath.isPlausibleDueDate(dueDate, currentTime)) {
+            result.rejected++;
+        } else {
+            cards.add(name, dueDate);
+            result.imported++;
+        }
+        if (listener != null && result.rows % PROGRESS_INTERVAL_ROWS == 0) {
+            listener.onProgress(result.rows);
+        }
+    }
+
+    // Both formats' names go through here: trimmed, blank falling back to defaultName, and null if
+    // what is left is longer than the store keeps.
+    static String importedName(String name, String defaultName) {
+        String trimmed = name == null ? "" : name.trim();
+        if (trimmed.isEmpty()) {
+            return defaultName;
+        }
+        return trimmed.length() <= CardStore.NAME_CAPACITY ? trimmed : null;
+    }
+
+    static void writeCsvRow(Writer out, int appWidgetId, String name, long dueDate) throws IOException {
+        out.write(Integer.toString(appWidgetId));
+        out.write(',');
+        if (name.indexOf(',') >= 0 || name.indexOf('"') >= 0 || name.indexOf('\n') >= 0 || name.indexOf('\r') >= 0) {
+            out.write('"');
+            out.write(name.replace("\"", "\"\""));
+            out.write('"');
+        } else {
+            out.write(name);
+        }
+        out.write(',');
+        out.write(Long.toString(dueDate));
+        out.write('\n');
+    }
+
+    static void writeJsonRow(Writer out, boolean first, int appWidgetId, String name, long dueDate) throws IOException {
+        out.write(first ? "\n  {\"widgetId\":" : ",\n  {\"widgetId\":");
+        out.write(Integer.toString(appWidgetId));
+        out.write(",\"name\":\"");
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.write('\\');
+                out.write(c);
+            } else if (c < 0x20) {
+                out.write(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            } else {
+                out.write(c);
+            }
+        }
+        out.write("\",\"dueDate\":");
+        out.write(Long.toString(dueDate));
+        out.write('}');
+    }
+
+    // JSON when the document is named or typed as JSON, CSV otherwise.
+    private static int formatOf(ContentResolver resolver, Uri uri) {
+        if ("application/json".equals(resolver.getType(uri))) {
+            return FORMAT_JSON;
+        }
+        try (Cursor cursor = resolver.query(uri, new String[]{OpenableColumns.DISPLAY_NAME}, null, null, null)) {
+            if (cursor != null && cursor.moveToFirst()) {
+                String displayName = cursor.getString(0);
+                if (displayName != null && displayName.toLowerCase(Locale.ROOT).endsWith(".json")) {
+                    return FORMAT_JSON;
+                }
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Could not read document name for " + uri, e);
+        }
+        return FORMAT_CSV;
+    }
+
+    private static int[] placedWidgetIds(Context context) {
+        int[] appWidgetIds = AppWidgetManager.getInstance(context)
+                .getAppWidgetIds(new ComponentName(context, CreditCardWidgetProvider.class));
+        return appWidgetIds != null ? appWidgetIds : new int[0];
+    }
+}
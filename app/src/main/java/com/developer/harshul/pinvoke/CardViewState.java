@@ -0,0 +1,77 @@
+package com.developer.harshul.pinvoke;
+
+import java.util.Locale;
+
+/**
+ * Everything one flipper page shows, resolved to display strings and the count's color in both
+ * day and night themes. Instances are immutable and compare by value, so
+ * {@link WidgetViewRenderer} can reuse the views it built for an equal state.
+ */
+final class CardViewState {
+
+    // Kept in the collapsed form of a page that went over its size budget.
+    static final int COLLAPSED_NAME_CHARS = 24;
+
+    final String name;
+    final String dueDate;
+    final String days;
+    final String daysLabel;
+    final int dayColor;
+    final int nightColor;
+
+    CardViewState(String name, String dueDate, String days, String daysLabel, int dayColor, int nightColor) {
+        this.name = name;
+        this.dueDate = dueDate;
+        this.days = days;
+        this.daysLabel = daysLabel;
+        this.dayColor = dayColor;
+        this.nightColor = nightColor;
+    }
+
+    static CardViewState of(DisplayStateTable table, String name, long dueDate, long currentTime, int sizeClass) {
+        int daysRemaining = CreditCardWidgetProvider.daysRemaining(dueDate, currentTime);
+        int state = DisplayStateTable.stateOf(daysRemaining);
+        return new CardViewState(name, DateMath.formatMonthDay(dueDate, Locale.getDefault()),
+                table.text(state, sizeClass, daysRemaining), table.label(state), table.dayColor(state), table.nightColor(state));
+    }
+
+    CardViewState collapsed() {
+        if (name.length() <= COLLAPSED_NAME_CHARS) {
+            return this;
+        }
+        return new CardViewState(name.substring(0, COLLAPSED_NAME_CHARS) + "...", dueDate, days, daysLabel, dayColor, nightColor);
+    }
+
+    // The same due date and count under a different name, for the page that stands in for cards
+    // left out of the flipper.
+    CardViewState withName(String newName) {
+        return new CardViewState(newName, dueDate, days, daysLabel, dayColor, nightColor);
+    }
+
+    int color(boolean night) {
+        return night ? nightColor : dayColor;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CardViewState)) return false;
+        CardViewState other = (CardViewState) o;
+        return dayColor == other.dayColor
+                && nightColor == other.nightColor
+                && name.equals(other.name)
+                && dueDate.equals(other.dueDate)
+                && days.equals(other.days)
+                && daysLabel.equals(other.daysLabel);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = name.hashCode();
+        result = 31 * result + dueDate.hashCode();
+        result = 31 * result + days.hashCode();
+        result = 31 * result + daysLabel.hashCode();
+        result = 31 * result + dayColor;
+        return 31 * result + nightColor;
+    }
+}
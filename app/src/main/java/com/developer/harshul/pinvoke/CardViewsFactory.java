@@ -0,0 +1,193 @@
+package com.developer.harshul.pinvoke;
+
+import android.appwidget.AppWidgetManager;
+import android.content.Context;
+import android.util.Log;
+import android.util.LongSparseArray;
+import android.widget.RemoteViews;
+import android.widget.RemoteViewsService;
+import androidx.core.content.ContextCompat;
+import java.util.Locale;
+
+/**
+ * Adapter behind one widget's card flipper. Cards are reloaded in {@link #onDataSetChanged()},
+ * which the launcher calls on a binder thread after {@code notifyAppWidgetViewDataChanged}.
+ *
+ * <p>Each reload turns the cards into a {@link WidgetViewState} and has {@link WidgetViewRenderer}
+ * compile it into pages within the parcel budget. The view state of each card is kept with a
+ * fingerprint of what it shows, so a daily tick that moves one card's count only resolves and
+ * rebuilds that card.
+ */
+final class CardViewsFactory implements RemoteViewsService.RemoteViewsFactory {
+
+    private static final String TAG = "CardViewsFactory";
+    private static final long SUMMARY_ITEM_ID = -1L;
+
+    private final Context context;
+    private final int appWidgetId;
+    private CardBuffer cards = new CardBuffer();
+    // Loads go here first, so a failed load leaves the last good cards in place.
+    private CardBuffer loading = new CardBuffer();
+    private long currentTime;
+    private int sizeClass = SizeClass.REGULAR;
+    private CardViewState[] viewStates = new CardViewState[0];
+    private LongSparseArray<Resolved> resolved = new LongSparseArray<>();
+    private WidgetViewRenderer renderer;
+    private boolean tilesEnabled;
+    private WidgetViewRenderer.Pages pages = WidgetViewRenderer.Pages.EMPTY;
+
+    CardViewsFactory(Context context, int appWidgetId) {
+        this.context = context;
+        this.appWidgetId = appWidgetId;
+    }
+
+    @Override
+    public void onCreate() {
+        renderer = new WidgetViewRenderer(context);
+        tilesEnabled = context.getResources().getBoolean(R.bool.bitmap_tiles);
+    }
+
+    @Override
+    public void onDataSetChanged() {
+        try {
+            // While the widget shows its last good layout, show the cards that went with it.
+            if (!RenderCache.restoredCards(appWidgetId, loading)) {
+                CreditCardWidgetProvider.loadCards(context, appWidgetId, loading);
+            }
+            CardBuffer loaded = loading;
+            loading = cards;
+            cards = loaded;
+            currentTime = WidgetClock.now();
+            sizeClass = RenderCache.sizeClass(appWidgetId);
+            if (sizeClass == SizeClass.UNKNOWN) {
+                sizeClass = SizeClass.rendered(SizeClass.of(AppWidgetManager.getInstance(context), appWidgetId, null), tilesEnabled);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error loading cards for widget " + appWidgetId + ", keeping " + cards.size + " previous cards", e);
+            WidgetMetrics.increment(WidgetMetrics.FALLBACKS);
+        }
+        resolveChanged();
+
+        long start = WidgetMetrics.begin(WidgetMetrics.STAGE_RENDER);
+        try {
+            boolean tiles = tilesEnabled && sizeClass == SizeClass.WIDE;
+            pages = renderer.render(new WidgetViewState(viewStates, cards.size, tiles));
+        } catch (Exception e) {
+            Log.e(TAG, "Error rendering widget " + appWidgetId + ", keeping " + pages.size() + " previous pages", e);
+        } finally {
+            WidgetMetrics.end(WidgetMetrics.STAGE_RENDER, start);
+        }
+    }
+
+    // Reuses the view state of cards that still show the same thing and resolves the rest.
+    private void resolveChanged() {
+        if (viewStates.length < cards.size) {
+            viewStates = new CardViewState[cards.size];
+        }
+        long environment = environmentState();
+        DisplayStateTable table = null;
+        LongSparseArray<Resolved> retained = new LongSparseArray<>();
+        int changed = 0;
+        for (int position = 0; position < cards.size; position++) {
+            int index = cards.order[position];
+            long state = cardState(environment, cards.names[index], cards.dueDates[index], currentTime, sizeClass);
+            long itemId = getCardItemId(position);
+            Resolved previous = resolved.get(itemId);
+            if (previous == null || previous.state != state) {
+                if (table == null) {
+                    table = DisplayStateTable.get(context);
+                }
+                previous = new Resolved(state, resolve(table, cards.names[index], cards.dueDates[index]));
+                changed++;
+            }
+            viewStates[position] = previous.viewState;
+            retained.put(itemId, previous);
+        }
+        Log.d(TAG, "Widget " + appWidgetId + ": " + changed + " of " + cards.size + " cards changed");
+        resolved = retained;
+    }
+
+    private CardViewState resolve(DisplayStateTable table, String name, long dueDate) {
+        try {
+            return CardViewState.of(table, name, dueDate, currentTime, sizeClass);
+        } catch (Exception e) {
+            Log.e(TAG, "Error resolving card display", e);
+            int color = ContextCompat.getColor(context, R.color.widget_on_surface);
+            return new CardViewState(name, "---", "--", context.getString(R.string.days), color, color);
+        }
+    }
+
+    // View states carry both theme colors, so only the locale changes what they resolve to.
+    private long environmentState() {
+        return Fingerprint.mix(Fingerprint.newFingerprint(), Locale.getDefault().hashCode());
+    }
+
+    // The zone offsets at both ends decide which local days the count and the due date fall on,
+    // so a time zone change resolves every card again.
+    static long cardState(long environment, String name, long dueDate, long currentTime, int sizeClass) {
+        long state = Fingerprint.mix(environment, name.hashCode());
+        state = Fingerprint.mix(state, dueDate);
+        state = Fingerprint.mix(state, ((long) DateMath.zoneOffset(currentTime) << 32) | (DateMath.zoneOffset(dueDate) & 0xffffffffL));
+        state = Fingerprint.mix(state, CreditCardWidgetProvider.displayedDays(dueDate, currentTime));
+        return Fingerprint.mix(state, sizeClass);
+    }
+
+    @Override
+    public void onDestroy() {
+        cards.clear();
+        loading.clear();
+        resolved.clear();
+        pages = WidgetViewRenderer.Pages.EMPTY;
+    }
+
+    @Override
+    public int getCount() {
+        return pages.size();
+    }
+
+    @Override
+    public RemoteViews getViewAt(int position) {
+        return position < pages.size() ? pages.views(position) : null;
+    }
+
+    @Override
+    public RemoteViews getLoadingView() {
+        return null;
+    }
+
+    @Override
+    public int getViewTypeCount() {
+        // Text pages and tile pages use different layouts.
+        return 2;
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return position == pages.cardPages && position < pages.size() ? SUMMARY_ITEM_ID : getCardItemId(position);
+    }
+
+    // A card keeps its id while it is only re-sorted or its due date rolls over; renaming or
+    // re-saving the list in a different order gives it a new one.
+    private long getCardItemId(int position) {
+        if (position >= cards.size) {
+            return position;
+        }
+        int index = cards.order[position];
+        return ((long) index << 32) | (cards.names[index].hashCode() & 0xffffffffL);
+    }
+
+    @Override
+    public boolean hasStableIds() {
+        return true;
+    }
+
+    private static final class Resolved {
+        final long state;
+        final CardViewState viewState;
+
+        Resolved(long state, CardViewState viewState) {
+            this.state = state;
+            this.viewState = viewState;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.developer.harshul.pinvoke;
+
+import android.appwidget.AppWidgetManager;
+import android.content.Intent;
+import android.widget.RemoteViewsService;
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+
+/**
+ * Serves the cards shown in a widget's flipper, so each card is sent to the launcher only when the
+ * flipper asks for it instead of as part of every widget update.
+ */
+public class CardWidgetService extends RemoteViewsService {
+
+    @Override
+    public RemoteViewsFactory onGetViewFactory(Intent intent) {
+        ConfigurationWatcher.install(this);
+        int appWidgetId = intent.getIntExtra(AppWidgetManager.EXTRA_APPWIDGET_ID, AppWidgetManager.INVALID_APPWIDGET_ID);
+        return new CardViewsFactory(getApplicationContext(), appWidgetId);
+    }
+
+    // Reached with: adb shell dumpsys activity service com.developer.harshul.pinvoke/.CardWidgetService
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        WidgetMetrics.dump(writer);
+    }
+}
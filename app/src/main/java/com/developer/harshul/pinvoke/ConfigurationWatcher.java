@@ -0,0 +1,78 @@
+package com.developer.harshul.pinvoke;
+
+import android.appwidget.AppWidgetManager;
+import android.content.ComponentCallbacks;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Build;
+import android.util.Log;
+import java.util.Locale;
+
+/**
+ * Refreshes every widget in one batched pass when the locale or night mode changes while the
+ * process is alive. The pass goes through the usual fingerprints, so only what the change
+ * affects is re-sent: a locale switch changes every card's text, while a theme switch only
+ * touches widgets drawn as tiles, or every widget before S, where the launcher cannot pick
+ * between the pre-resolved day and night colors itself. Card data is served from
+ * {@link CardStore}'s cache and is not read again.
+ *
+ * <p>Locale changes while the process is not running arrive as {@code ACTION_LOCALE_CHANGED} in
+ * {@link CreditCardWidgetProvider} instead.
+ */
+final class ConfigurationWatcher implements ComponentCallbacks {
+
+    private static final String TAG = "ConfigurationWatcher";
+
+    static final boolean LAUNCHER_APPLIES_NIGHT_COLORS = Build.VERSION.SDK_INT >= Build.VERSION_CODES.S;
+
+    private static ConfigurationWatcher instance;
+
+    private final Context context;
+    private Locale locale;
+    private int nightMode;
+
+    static synchronized void install(Context context) {
+        if (instance == null) {
+            Context appContext = context.getApplicationContext();
+            instance = new ConfigurationWatcher(appContext, appContext.getResources().getConfiguration());
+            appContext.registerComponentCallbacks(instance);
+        }
+    }
+
+    private ConfigurationWatcher(Context context, Configuration configuration) {
+        this.context = context;
+        this.locale = configuration.getLocales().get(0);
+        this.nightMode = configuration.uiMode & Configuration.UI_MODE_NIGHT_MASK;
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+        Locale newLocale = newConfig.getLocales().get(0);
+        int newNightMode = newConfig.uiMode & Configuration.UI_MODE_NIGHT_MASK;
+        boolean changed;
+        synchronized (this) {
+            changed = !newLocale.equals(locale) || newNightMode != nightMode;
+            locale = newLocale;
+            nightMode = newNightMode;
+        }
+        if (!changed) {
+            return;
+        }
+
+        try {
+            int[] appWidgetIds = AppWidgetManager.getInstance(context)
+                    .getAppWidgetIds(new ComponentName(context, CreditCardWidgetProvider.class));
+            if (appWidgetIds != null && appWidgetIds.length > 0) {
+                Log.d(TAG, "Configuration changed to " + newLocale + ", night mode " + newNightMode + "; refreshing " + appWidgetIds.length + " widgets");
+                WidgetUpdateQueue.getInstance().enqueue(context, appWidgetIds, null, null);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error refreshing widgets after a configuration change", e);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+    }
+}
@@ -4,44 +4,41 @@ import android.app.DatePickerDialog;
 import android.appwidget.AppWidgetManager;
 import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.Trace;
 import android.text.TextUtils;
 import android.util.Log;
-import android.view.LayoutInflater;
 import android.view.View;
 import android.widget.Button;
-import android.widget.LinearLayout;
-import android.widget.ImageButton;
 import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.asynclayoutinflater.view.AsyncLayoutInflater;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 import com.google.android.material.appbar.MaterialToolbar;
-import com.google.android.material.textfield.TextInputEditText;
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
+import com.google.android.material.progressindicator.LinearProgressIndicator;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 
 public class CreditCardWidgetConfigActivity extends AppCompatActivity {
 
     private static final String TAG = "WidgetConfig";
-    private static final String PREFS_NAME = "CCWidgetPrefs";
-    private static final String CARDS_DATA_KEY = "cards_data";
-    private static final int MAX_CARDS = 10;
     private static final int MIN_CARDS = 1;
+    // Rows visible on a typical phone before scrolling; inflated while the cards load.
+    private static final int PREWARMED_ROWS = 3;
 
     private int appWidgetId = AppWidgetManager.INVALID_APPWIDGET_ID;
-    private LinearLayout cardsContainer;
+    private RecyclerView cardsList;
+    private LinearProgressIndicator loadingIndicator;
+    private CardEditorAdapter cardsAdapter;
     private Button addCardButton;
     private Button saveButton;
-    private List<CardEntry> cardEntries;
+    private long nextDraftId;
     private final ExecutorService executorService = Executors.newSingleThreadExecutor();
     private final Handler mainHandler = new Handler(Looper.getMainLooper());
 
@@ -52,7 +49,12 @@ public class CreditCardWidgetConfigActivity extends AppCompatActivity {
 
         initializeViews();
         setupWidget();
+        if (isFinishing()) {
+            return;
+        }
+        setLoading(true);
         loadExistingData();
+        prewarmRows();
         setupEventListeners();
         setResult(RESULT_CANCELED);
     }
@@ -65,10 +67,24 @@ public class CreditCardWidgetConfigActivity extends AppCompatActivity {
             getSupportActionBar().setDisplayShowHomeEnabled(true);
         }
 
-        cardsContainer = findViewById(R.id.cards_container);
+        cardsList = findViewById(R.id.cards_list);
+        loadingIndicator = findViewById(R.id.cards_loading);
         addCardButton = findViewById(R.id.add_card_button);
         saveButton = findViewById(R.id.save_button);
-        cardEntries = new ArrayList<>();
+
+        cardsAdapter = new CardEditorAdapter(this, MIN_CARDS, new CardEditorAdapter.Listener() {
+            @Override
+            public void onPickDate(CardEditorAdapter.CardDraft draft) {
+                showDatePicker(draft);
+            }
+
+            @Override
+            public void onRemove(CardEditorAdapter.CardDraft draft) {
+                removeCardEntry(draft);
+            }
+        });
+        cardsList.setLayoutManager(new LinearLayoutManager(this));
+        cardsList.setAdapter(cardsAdapter);
     }
 
     private void setupWidget() {
@@ -94,150 +110,137 @@ public class CreditCardWidgetConfigActivity extends AppCompatActivity {
         return true;
     }
 
+    // Opening the store and reading it both run on the executor while the toolbar and loading
+    // indicator draw; the rows are bound once the drafts are back on the main thread.
     private void loadExistingData() {
-        SharedPreferences prefs = getSharedPreferences(PREFS_NAME + appWidgetId, Context.MODE_PRIVATE);
-        String cardsDataJson = prefs.getString(CARDS_DATA_KEY, "");
+        int widgetId = appWidgetId;
+        Context context = getApplicationContext();
+        executorService.execute(() -> {
+            Trace.beginSection("ccwidget:config_load");
+            List<CardEditorAdapter.CardDraft> drafts;
+            try {
+                CardBuffer cards = new CardBuffer();
+                CardStore.getInstance(context).load(widgetId, cards);
+                drafts = toDrafts(cards);
+            } finally {
+                Trace.endSection();
+            }
+            mainHandler.post(() -> showCards(drafts));
+        });
+    }
 
-        if (!TextUtils.isEmpty(cardsDataJson)) {
-            parseAndLoadCards(cardsDataJson);
-        } else {
-            addDefaultCard();
+    private List<CardEditorAdapter.CardDraft> toDrafts(CardBuffer cards) {
+        List<CardEditorAdapter.CardDraft> drafts = new ArrayList<>(cards.size);
+        long currentTime = WidgetClock.now();
+        for (int i = 0; i < cards.size; i++) {
+            if (DateMath.isPlausibleDueDate(cards.dueDates[i], currentTime)) {
+                drafts.add(new CardEditorAdapter.CardDraft(drafts.size(), cards.names[i], cards.dueDates[i]));
+            }
         }
+        return drafts;
     }
 
-    private void parseAndLoadCards(String cardsDataJson) {
+    private void showCards(List<CardEditorAdapter.CardDraft> drafts) {
+        if (isFinishing() || isDestroyed()) {
+            return;
+        }
+        Trace.beginSection("ccwidget:config_bind");
         try {
-            JSONArray cardsArray = new JSONArray(cardsDataJson);
-            for (int i = 0; i < cardsArray.length(); i++) {
-                JSONObject cardObj = cardsArray.optJSONObject(i);
-                if (cardObj != null) {
-                    String cardName = cardObj.optString("name", "");
-                    long dueDate = cardObj.optLong("dueDate", getDefaultDueDate());
-                    if (isValidDate(dueDate)) {
-                        addCardEntry(cardName, dueDate);
-                    }
-                }
+            nextDraftId = drafts.size();
+            if (drafts.isEmpty()) {
+                drafts.add(new CardEditorAdapter.CardDraft(nextDraftId++, "", getDefaultDueDate()));
             }
-        } catch (JSONException e) {
-            Log.e(TAG, "Error parsing cards data", e);
-            addDefaultCard();
+            cardsAdapter.submitList(drafts, () -> {
+                setLoading(false);
+                reportFullyDrawn();
+            });
+        } finally {
+            Trace.endSection();
         }
     }
 
-    private boolean isValidDate(long dateMillis) {
-        long currentTime = System.currentTimeMillis();
-        long fiveYears = TimeUnit.DAYS.toMillis(5 * 365);
-        return dateMillis >= currentTime - fiveYears && dateMillis <= currentTime + fiveYears;
+    private void prewarmRows() {
+        AsyncLayoutInflater inflater = new AsyncLayoutInflater(this);
+        for (int i = 0; i < PREWARMED_ROWS; i++) {
+            inflater.inflate(R.layout.card_entry_item, cardsList, (view, resid, parent) -> cardsAdapter.prewarm(view));
+        }
     }
 
-    private void addDefaultCard() {
-        addCardEntry("", getDefaultDueDate());
+    private void setLoading(boolean loading) {
+        loadingIndicator.setVisibility(loading ? View.VISIBLE : View.GONE);
+        addCardButton.setEnabled(!loading);
+        saveButton.setEnabled(!loading);
     }
 
     private void addNewCardEntry() {
-        if (cardEntries.size() >= MAX_CARDS) {
-            showToast(getString(R.string.max_cards_allowed, MAX_CARDS));
+        if (cardsAdapter.getItemCount() >= CardStore.MAX_CARDS_PER_WIDGET) {
+            showToast(getString(R.string.max_cards_allowed, CardStore.MAX_CARDS_PER_WIDGET));
             return;
         }
         addCardEntry("", getDefaultDueDate());
     }
 
     private void addCardEntry(String cardName, long dueDate) {
-        View cardView = LayoutInflater.from(this).inflate(R.layout.card_entry_item, cardsContainer, false);
-        TextInputEditText cardNameEdit = cardView.findViewById(R.id.card_name_edit);
-        Button dueDateButton = cardView.findViewById(R.id.due_date_button);
-        ImageButton removeButton = cardView.findViewById(R.id.remove_card_button);
-
-        Calendar selectedDate = Calendar.getInstance();
-        selectedDate.setTimeInMillis(dueDate);
-
-        CardEntry cardEntry = new CardEntry(cardView, cardNameEdit, dueDateButton, selectedDate);
-        cardEntries.add(cardEntry);
-
-        cardNameEdit.setText(cardName);
-        updateDateButton(cardEntry);
-
-        dueDateButton.setOnClickListener(v -> showDatePicker(cardEntry));
-        removeButton.setOnClickListener(v -> removeCardEntry(cardEntry));
-
-        cardsContainer.addView(cardView);
-        updateRemoveButtonsVisibility();
+        List<CardEditorAdapter.CardDraft> drafts = new ArrayList<>(cardsAdapter.getCurrentList());
+        drafts.add(new CardEditorAdapter.CardDraft(nextDraftId++, cardName, dueDate));
+        int position = drafts.size() - 1;
+        cardsAdapter.submitList(drafts, () -> cardsList.smoothScrollToPosition(position));
     }
 
-    private void removeCardEntry(CardEntry cardEntry) {
-        if (cardEntries.size() <= MIN_CARDS) {
+    private void removeCardEntry(CardEditorAdapter.CardDraft draft) {
+        if (cardsAdapter.getItemCount() <= MIN_CARDS) {
             showToast(getString(R.string.at_least_one_card));
             return;
         }
 
-        cardsContainer.removeView(cardEntry.cardView);
-        cardEntries.remove(cardEntry);
-        updateRemoveButtonsVisibility();
-    }
-
-    private void updateRemoveButtonsVisibility() {
-        boolean showRemoveButtons = cardEntries.size() > MIN_CARDS;
-        for (CardEntry entry : cardEntries) {
-            ImageButton removeButton = entry.cardView.findViewById(R.id.remove_card_button);
-            removeButton.setVisibility(showRemoveButtons ? View.VISIBLE : View.GONE);
-        }
+        List<CardEditorAdapter.CardDraft> drafts = new ArrayList<>(cardsAdapter.getCurrentList());
+        drafts.remove(draft);
+        cardsAdapter.submitList(drafts);
     }
 
-    private void showDatePicker(CardEntry cardEntry) {
+    private void showDatePicker(CardEditorAdapter.CardDraft draft) {
+        Calendar selectedDate = Calendar.getInstance();
+        selectedDate.setTimeInMillis(draft.dueDate);
         DatePickerDialog datePickerDialog = new DatePickerDialog(
                 this,
                 (view, year, month, dayOfMonth) -> {
-                    cardEntry.selectedDate.set(year, month, dayOfMonth);
-                    updateDateButton(cardEntry);
+                    selectedDate.set(year, month, dayOfMonth);
+                    cardsAdapter.updateDueDate(draft, selectedDate.getTimeInMillis());
                 },
-                cardEntry.selectedDate.get(Calendar.YEAR),
-                cardEntry.selectedDate.get(Calendar.MONTH),
-                cardEntry.selectedDate.get(Calendar.DAY_OF_MONTH)
+                selectedDate.get(Calendar.YEAR),
+                selectedDate.get(Calendar.MONTH),
+                selectedDate.get(Calendar.DAY_OF_MONTH)
         );
-        datePickerDialog.getDatePicker().setMinDate(System.currentTimeMillis());
+        datePickerDialog.getDatePicker().setMinDate(WidgetClock.now());
         datePickerDialog.show();
     }
 
-    private void updateDateButton(CardEntry cardEntry) {
-        String dateStr = android.text.format.DateFormat.getDateFormat(this).format(cardEntry.selectedDate.getTime());
-        cardEntry.dueDateButton.setText(getString(R.string.due_date_button_text, dateStr));
-    }
-
     private void saveConfiguration() {
         saveButton.setEnabled(false);
         saveButton.setText(getString(R.string.saving));
 
-        JSONArray cardsArray = new JSONArray();
-        for (CardEntry entry : cardEntries) {
-            String cardName = entry.cardNameEdit.getText().toString().trim();
+        CardBuffer cards = new CardBuffer();
+        for (CardEditorAdapter.CardDraft draft : cardsAdapter.getCurrentList()) {
+            String cardName = draft.name != null ? draft.name.trim() : "";
             if (TextUtils.isEmpty(cardName)) {
                 cardName = getString(R.string.credit_card);
             }
-
-            try {
-                JSONObject cardObj = new JSONObject();
-                cardObj.put("name", cardName);
-                cardObj.put("dueDate", entry.selectedDate.getTimeInMillis());
-                cardsArray.put(cardObj);
-            } catch (JSONException e) {
-                Log.w(TAG, "Error creating card JSON", e);
-            }
+            cards.add(cardName, draft.dueDate);
         }
 
-        if (cardsArray.length() == 0) {
+        if (cards.isEmpty()) {
             showToast(getString(R.string.please_add_at_least_one_card));
             saveButton.setEnabled(true);
             saveButton.setText(getString(R.string.save_widget));
             return;
         }
 
-        saveDataAsync(cardsArray);
+        saveDataAsync(cards);
     }
 
-    private void saveDataAsync(JSONArray cardsArray) {
+    private void saveDataAsync(CardBuffer cards) {
         executorService.execute(() -> {
-            SharedPreferences prefs = getSharedPreferences(PREFS_NAME + appWidgetId, Context.MODE_PRIVATE);
-            boolean success = prefs.edit().putString(CARDS_DATA_KEY, cardsArray.toString()).commit();
+            boolean success = CardStore.getInstance(this).save(appWidgetId, cards);
 
             mainHandler.post(() -> {
                 if (success) {
@@ -258,10 +261,7 @@ public class CreditCardWidgetConfigActivity extends AppCompatActivity {
     }
 
     private long getDefaultDueDate() {
-        Calendar cal = Calendar.getInstance();
-        cal.add(Calendar.MONTH, 1);
-        cal.set(Calendar.DAY_OF_MONTH, 15);
-        return cal.getTimeInMillis();
+        return CreditCardWidgetProvider.getDefaultDueDate();
     }
 
     private void showToast(String message) {
@@ -278,22 +278,8 @@ public class CreditCardWidgetConfigActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (cardEntries != null) {
-            cardEntries.clear();
-        }
-    }
-
-    private static class CardEntry {
-        final View cardView;
-        final TextInputEditText cardNameEdit;
-        final Button dueDateButton;
-        final Calendar selectedDate;
-
-        CardEntry(View cardView, TextInputEditText cardNameEdit, Button dueDateButton, Calendar selectedDate) {
-            this.cardView = cardView;
-            this.cardNameEdit = cardNameEdit;
-            this.dueDateButton = dueDateButton;
-            this.selectedDate = selectedDate;
+        if (cardsList != null) {
+            cardsList.setAdapter(null);
         }
     }
 }
\ No newline at end of file
@@ -3,338 +3,192 @@ package com.developer.harshul.pinvoke;
 import android.app.PendingIntent;
 import android.appwidget.AppWidgetManager;
 import android.appwidget.AppWidgetProvider;
+import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
+import android.net.Uri;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Looper;
 import android.util.Log;
+import android.util.SparseArray;
 import android.view.View;
 import android.widget.RemoteViews;
-import androidx.core.content.ContextCompat;
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.Collections;
-import java.util.Date;
-import java.util.List;
-import java.util.Locale;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
 
 public class CreditCardWidgetProvider extends AppWidgetProvider {
 
     private static final String TAG = "CreditCardWidget";
-    private static final String PREFS_NAME = "CCWidgetPrefs";
-    private static final String CARDS_DATA_KEY = "cards_data";
-    private static final ExecutorService executorService = Executors.newSingleThreadExecutor();
 
     @Override
-    public void onUpdate(Context context, AppWidgetManager appWidgetManager, int[] appWidgetIds) {
-        executorService.execute(() -> {
-            for (int appWidgetId : appWidgetIds) {
-                try {
-                    updateAppWidget(context, appWidgetManager, appWidgetId, null);
-                } catch (Exception e) {
-                    Log.e(TAG, "Error updating widget " + appWidgetId, e);
-                    showErrorState(context, appWidgetManager, appWidgetId);
-                }
+    public void onReceive(Context context, Intent intent) {
+        ConfigurationWatcher.install(context);
+        String action = intent.getAction();
+        if (Intent.ACTION_TIMEZONE_CHANGED.equals(action)) {
+            DateMath.refreshTimeZone();
+        }
+        if (Intent.ACTION_BOOT_COMPLETED.equals(action)
+                || Intent.ACTION_TIME_CHANGED.equals(action)
+                || Intent.ACTION_TIMEZONE_CHANGED.equals(action)
+                || Intent.ACTION_LOCALE_CHANGED.equals(action)) {
+            AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(context);
+            int[] appWidgetIds = appWidgetManager.getAppWidgetIds(new ComponentName(context, CreditCardWidgetProvider.class));
+            if (appWidgetIds != null && appWidgetIds.length > 0) {
+                onUpdate(context, appWidgetManager, appWidgetIds);
             }
-        });
+            return;
+        }
+        super.onReceive(context, intent);
+    }
+
+    @Override
+    public void onUpdate(Context context, AppWidgetManager appWidgetManager, int[] appWidgetIds) {
+        WidgetUpdateQueue.getInstance().enqueue(context, appWidgetIds, null, goAsync());
     }
 
     @Override
     public void onAppWidgetOptionsChanged(Context context, AppWidgetManager appWidgetManager, int appWidgetId, Bundle newOptions) {
         super.onAppWidgetOptionsChanged(context, appWidgetManager, appWidgetId, newOptions);
-        executorService.execute(() -> {
-            try {
-                updateAppWidget(context, appWidgetManager, appWidgetId, newOptions);
-            } catch (Exception e) {
-                Log.e(TAG, "Error updating widget on options changed " + appWidgetId, e);
-                showErrorState(context, appWidgetManager, appWidgetId);
-            }
-        });
+        boolean tiles = context.getResources().getBoolean(R.bool.bitmap_tiles);
+        if (SizeClass.rendered(SizeClass.fromOptions(newOptions), tiles) == RenderCache.sizeClass(appWidgetId)) {
+            return;
+        }
+        WidgetUpdateQueue.getInstance().enqueueDebounced(context, appWidgetId, newOptions, goAsync());
     }
 
     static void updateAppWidget(Context context, AppWidgetManager appWidgetManager, int appWidgetId) {
-        updateAppWidget(context, appWidgetManager, appWidgetId, null);
+        WidgetUpdateQueue.getInstance().enqueue(context, new int[]{appWidgetId}, null, null);
     }
 
-    static void updateAppWidget(Context context, AppWidgetManager appWidgetManager, int appWidgetId, Bundle options) {
+    static void updateAppWidgets(Context context, AppWidgetManager appWidgetManager, int[] appWidgetIds, SparseArray<Bundle> options) {
         if (context == null || appWidgetManager == null) {
             Log.w(TAG, "Context or AppWidgetManager is null");
             return;
         }
 
         try {
-            RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.widget_credit_card);
-
-            SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME + appWidgetId, Context.MODE_PRIVATE);
-            String cardsDataJson = prefs.getString(CARDS_DATA_KEY, "");
-
-            ParseResult result = parseCardData(cardsDataJson);
-            List<CardData> cardDataList = result.cardData;
-
-            if (result.dataUpdated) {
-                saveUpdatedData(context, appWidgetId, result.updatedData);
-            }
-
-            Intent intent = new Intent(context, CreditCardWidgetConfigActivity.class);
-            intent.putExtra(AppWidgetManager.EXTRA_APPWIDGET_ID, appWidgetId);
-            intent.setAction("com.developer.harshul.pinvoke.CONFIGURE." + appWidgetId);
-            PendingIntent pendingIntent = PendingIntent.getActivity(context, appWidgetId, intent, PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
-
-            if (cardDataList.isEmpty()) {
-                views.setViewVisibility(R.id.empty_view, View.VISIBLE);
-                views.setViewVisibility(R.id.cards_view_flipper, View.GONE);
-                views.setOnClickPendingIntent(R.id.widget_container, pendingIntent);
-            } else {
-                views.setViewVisibility(R.id.empty_view, View.GONE);
-                views.setViewVisibility(R.id.cards_view_flipper, View.VISIBLE);
-
-                views.removeAllViews(R.id.cards_view_flipper);
-                int widgetWidth = getWidgetWidth(appWidgetManager, appWidgetId, options);
-
-                for (CardData cardData : cardDataList) {
-                    RemoteViews cardView = new RemoteViews(context.getPackageName(), R.layout.widget_card_item);
-                    updateWidgetDisplay(context, cardView, cardData, widgetWidth);
-                    cardView.setOnClickPendingIntent(R.id.widget_item_container, pendingIntent);
-                    views.addView(R.id.cards_view_flipper, cardView);
-                }
-            }
-
-            appWidgetManager.updateAppWidget(appWidgetId, views);
-
+            new WidgetUpdateEngine(context, appWidgetManager).update(appWidgetIds, options);
         } catch (Exception e) {
-            Log.e(TAG, "Error in updateAppWidget", e);
-            showErrorState(context, appWidgetManager, appWidgetId);
-        }
-    }
-
-    private static int getWidgetWidth(AppWidgetManager appWidgetManager, int appWidgetId, Bundle options) {
-        Bundle newOptions = (options == null) ? appWidgetManager.getAppWidgetOptions(appWidgetId) : options;
-        if (newOptions != null && newOptions.containsKey(AppWidgetManager.OPTION_APPWIDGET_MIN_WIDTH)) {
-            return newOptions.getInt(AppWidgetManager.OPTION_APPWIDGET_MIN_WIDTH);
+            Log.e(TAG, "Error in updateAppWidgets", e);
+            for (int appWidgetId : appWidgetIds) {
+                showFallback(context, appWidgetManager, appWidgetId);
+                WidgetUpdateQueue.getInstance().retryLater(context, appWidgetId);
+            }
         }
-        return 0;
-    }
-
-    private static ParseResult parseCardData(String cardsDataJson) {
-        if (cardsDataJson == null || cardsDataJson.trim().isEmpty()) {
-            return new ParseResult(Collections.emptyList(), null, false);
+        UpdateScheduler.reschedule(context);
+    }
+
+    // The widget's outer layout. Cards are served separately by CardWidgetService, so this stays
+    // the same size however many cards the widget shows and only has to be re-sent when the
+    // environment changes.
+    static RemoteViews buildRemoteViews(Context context, int appWidgetId) {
+        RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.widget_credit_card);
+
+        Intent intent = new Intent(context, CreditCardWidgetConfigActivity.class);
+        intent.putExtra(AppWidgetManager.EXTRA_APPWIDGET_ID, appWidgetId);
+        intent.setAction("com.developer.harshul.pinvoke.CONFIGURE." + appWidgetId);
+        PendingIntent pendingIntent = PendingIntent.getActivity(context, appWidgetId, intent, PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+
+        Intent serviceIntent = new Intent(context, CardWidgetService.class);
+        serviceIntent.putExtra(AppWidgetManager.EXTRA_APPWIDGET_ID, appWidgetId);
+        // Make the intent unique per widget so the launcher does not share one adapter between ids.
+        serviceIntent.setData(Uri.parse(serviceIntent.toUri(Intent.URI_INTENT_SCHEME)));
+
+        // Undo showErrorState, since the launcher may apply this on top of the existing views.
+        views.setViewVisibility(R.id.cards_view_flipper, View.VISIBLE);
+        views.setTextViewText(R.id.empty_view, context.getString(R.string.please_add_at_least_one_card));
+        views.setRemoteAdapter(R.id.cards_view_flipper, serviceIntent);
+        views.setEmptyView(R.id.cards_view_flipper, R.id.empty_view);
+        views.setPendingIntentTemplate(R.id.cards_view_flipper, pendingIntent);
+        views.setOnClickPendingIntent(R.id.widget_container, pendingIntent);
+        return views;
+    }
+
+    static void loadCards(Context context, int appWidgetId, CardBuffer cards) {
+        CardStore store = CardStore.getInstance(context);
+        long start = WidgetMetrics.begin(WidgetMetrics.STAGE_STORE_READ);
+        try {
+            store.load(appWidgetId, cards);
+        } finally {
+            WidgetMetrics.end(WidgetMetrics.STAGE_STORE_READ, start);
         }
 
+        start = WidgetMetrics.begin(WidgetMetrics.STAGE_ROLLOVER);
         try {
-            JSONArray cardsArray = new JSONArray(cardsDataJson);
-            if (cardsArray.length() == 0) {
-                return new ParseResult(Collections.emptyList(), null, false);
-            }
-
-            return processCards(cardsArray);
-
-        } catch (JSONException e) {
-            Log.e(TAG, "Error parsing card data", e);
-            return new ParseResult(Collections.emptyList(), null, false);
+            rollOverdueDates(store, appWidgetId, cards);
+        } finally {
+            WidgetMetrics.end(WidgetMetrics.STAGE_ROLLOVER, start);
         }
     }
 
-    private static ParseResult processCards(JSONArray cardsArray) throws JSONException {
-        List<CardData> cardDataList = new ArrayList<>();
-        JSONArray updatedCardsArray = new JSONArray();
-        boolean dataUpdated = false;
-
-        for (int i = 0; i < cardsArray.length(); i++) {
-            JSONObject cardObj = cardsArray.getJSONObject(i);
-            String cardName = cardObj.optString("name", "Credit Card");
-            long originalDueDate = cardObj.optLong("dueDate", getDefaultDueDate());
-            long updatedDueDate = updateOverdueDateToNextMonth(originalDueDate);
-
-            if (updatedDueDate != originalDueDate) {
-                dataUpdated = true;
-            }
-            
-            cardDataList.add(new CardData(cardName, updatedDueDate));
-
-            JSONObject updatedCardObj = new JSONObject();
-            updatedCardObj.put("name", cardName);
-            updatedCardObj.put("dueDate", updatedDueDate);
-            updatedCardsArray.put(updatedCardObj);
+    private static void rollOverdueDates(CardStore store, int appWidgetId, CardBuffer cards) {
+        if (cards.rollOverAndSort(WidgetClock.now())) {
+            store.writeDirtyDueDates(appWidgetId, cards);
+            Log.d(TAG, "Updated overdue dates for widget " + appWidgetId);
         }
-        
-        Collections.sort(cardDataList, (c1, c2) -> Long.compare(c1.dueDate, c2.dueDate));
-
-        return new ParseResult(cardDataList, dataUpdated ? updatedCardsArray : null, dataUpdated);
     }
 
-    private static void updateWidgetDisplay(Context context, RemoteViews views, CardData cardData, int widgetWidth) {
-        try {
-            long currentTime = System.currentTimeMillis();
-            long diffMillis = cardData.dueDate - currentTime;
-            int daysRemaining = (int) TimeUnit.MILLISECONDS.toDays(diffMillis);
-
-            SimpleDateFormat dateFormatter = new SimpleDateFormat("MMM dd", Locale.getDefault());
-            String dueDateStr = dateFormatter.format(new Date(cardData.dueDate));
-
-            views.setTextViewText(R.id.card_name, cardData.name);
-            views.setTextViewText(R.id.due_date, dueDateStr);
+    static int daysRemaining(long dueDate, long currentTime) {
+        return (int) TimeUnit.MILLISECONDS.toDays(dueDate - currentTime);
+    }
 
-            DaysDisplayInfo displayInfo = calculateDaysDisplay(context, daysRemaining, widgetWidth);
-            views.setTextViewText(R.id.days_remaining, displayInfo.text);
-            views.setTextColor(R.id.days_remaining, displayInfo.color);
-            views.setTextViewText(R.id.days_label, displayInfo.label);
+    // Days remaining as far as DisplayStateTable can tell: every overdue day looks the same.
+    static int displayedDays(long dueDate, long currentTime) {
+        return Math.max(daysRemaining(dueDate, currentTime), -1);
+    }
 
+    // Puts back the widget's last good layout and cards, or the error view if there are none. Either way the
+    // render cache is cleared so the retry renders from scratch.
+    static void showFallback(Context context, AppWidgetManager appWidgetManager, int appWidgetId) {
+        RenderCache.invalidate(appWidgetId);
+        RemoteViews snapshot = RenderCache.restoreSnapshot(appWidgetId);
+        if (snapshot == null) {
+            showErrorState(context, appWidgetManager, appWidgetId);
+            return;
+        }
+        WidgetMetrics.increment(WidgetMetrics.FALLBACKS);
+        try {
+            appWidgetManager.updateAppWidget(appWidgetId, snapshot);
+            // The adapter reloads from the snapshot's cards, not the store the failed update read.
+            appWidgetManager.notifyAppWidgetViewDataChanged(appWidgetId, R.id.cards_view_flipper);
         } catch (Exception e) {
-            Log.e(TAG, "Error updating widget display", e);
-            views.setTextViewText(R.id.card_name, "Credit Card");
-            views.setTextViewText(R.id.due_date, "---");
-            views.setTextViewText(R.id.days_remaining, "--");
-            views.setTextViewText(R.id.days_label, "days");
+            Log.e(TAG, "Error restoring last good layout", e);
+            showErrorState(context, appWidgetManager, appWidgetId);
         }
     }
 
-    private static DaysDisplayInfo calculateDaysDisplay(Context context, int daysRemaining, int widgetWidth) {
-        String daysText;
-        String label = context.getString(R.string.days);
-        int textColor;
-        boolean useShortText = widgetWidth > 0 && widgetWidth < 180; // 180dp as a threshold for small widget
-
-        if (daysRemaining < 0) {
-            daysText = useShortText ? "DUE" : "OVERDUE";
-            label = "";
-            textColor = ContextCompat.getColor(context, R.color.error);
-        } else if (daysRemaining == 0) {
-            daysText = useShortText ? "DUE" : "TODAY";
-            label = "";
-            textColor = ContextCompat.getColor(context, R.color.error);
-        } else {
-            daysText = String.valueOf(daysRemaining);
-            if (daysRemaining == 1) {
-                label = "day";
-            }
-            if (daysRemaining <= 3) {
-                textColor = ContextCompat.getColor(context, R.color.warning);
-            } else if (daysRemaining <= 7) {
-                textColor = ContextCompat.getColor(context, R.color.amber);
-            } else {
-                textColor = ContextCompat.getColor(context, R.color.success);
-            }
+    static void showErrorState(Context context, AppWidgetManager appWidgetManager, int appWidgetId) {
+        RenderCache.invalidate(appWidgetId);
+        WidgetMetrics.increment(WidgetMetrics.ERROR_STATES);
+        try {
+            RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.widget_credit_card);
+            views.setViewVisibility(R.id.empty_view, View.VISIBLE);
+            views.setTextViewText(R.id.empty_view, "Error. Tap to retry.");
+            views.setViewVisibility(R.id.cards_view_flipper, View.GONE);
+            appWidgetManager.updateAppWidget(appWidgetId, views);
+        } catch (Exception e) {
+            Log.e(TAG, "Error showing error state", e);
         }
-        
-        return new DaysDisplayInfo(daysText, label, textColor);
     }
 
-    private static void showErrorState(Context context, AppWidgetManager appWidgetManager, int appWidgetId) {
-        new Handler(Looper.getMainLooper()).post(() -> {
-            try {
-                RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.widget_credit_card);
-                views.setViewVisibility(R.id.empty_view, View.VISIBLE);
-                views.setTextViewText(R.id.empty_view, "Error. Tap to retry.");
-                views.setViewVisibility(R.id.cards_view_flipper, View.GONE);
-                appWidgetManager.updateAppWidget(appWidgetId, views);
-            } catch (Exception e) {
-                Log.e(TAG, "Error showing error state", e);
-            }
-        });
-    }
-
-    private static long getDefaultDueDate() {
-        Calendar cal = Calendar.getInstance();
-        cal.add(Calendar.MONTH, 1);
-        cal.set(Calendar.DAY_OF_MONTH, 15);
-        return cal.getTimeInMillis();
+    static long getDefaultDueDate() {
+        return DateMath.defaultDueDate(WidgetClock.now());
     }
 
     @Override
     public void onDeleted(Context context, int[] appWidgetIds) {
+        CardStore store = CardStore.getInstance(context);
         for (int appWidgetId : appWidgetIds) {
-            SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME + appWidgetId, Context.MODE_PRIVATE);
-            prefs.edit().clear().apply();
+            store.delete(appWidgetId);
+            RenderCache.remove(appWidgetId);
+            WidgetUpdateQueue.getInstance().clearRetry(appWidgetId);
         }
+        UpdateScheduler.reschedule(context);
         super.onDeleted(context, appWidgetIds);
     }
 
-    private static long updateOverdueDateToNextMonth(long dueDate) {
-        Calendar currentCal = Calendar.getInstance();
-        Calendar dueCal = Calendar.getInstance();
-        dueCal.setTimeInMillis(dueDate);
-
-        currentCal.set(Calendar.HOUR_OF_DAY, 0);
-        currentCal.set(Calendar.MINUTE, 0);
-        currentCal.set(Calendar.SECOND, 0);
-        currentCal.set(Calendar.MILLISECOND, 0);
-
-        dueCal.set(Calendar.HOUR_OF_DAY, 0);
-        dueCal.set(Calendar.MINUTE, 0);
-        dueCal.set(Calendar.SECOND, 0);
-        dueCal.set(Calendar.MILLISECOND, 0);
-
-        if (dueCal.before(currentCal)) {
-            int dayOfMonth = dueCal.get(Calendar.DAY_OF_MONTH);
-
-            Calendar nextMonth = Calendar.getInstance();
-            nextMonth.setTimeInMillis(System.currentTimeMillis());
-            nextMonth.add(Calendar.MONTH, 1);
-            
-            int maxDay = nextMonth.getActualMaximum(Calendar.DAY_OF_MONTH);
-            if(dayOfMonth > maxDay) {
-                dayOfMonth = maxDay;
-            }
-
-            nextMonth.set(Calendar.DAY_OF_MONTH, dayOfMonth);
-            nextMonth.set(Calendar.HOUR_OF_DAY, 0);
-            nextMonth.set(Calendar.MINUTE, 0);
-            nextMonth.set(Calendar.SECOND, 0);
-            nextMonth.set(Calendar.MILLISECOND, 0);
-
-            return nextMonth.getTimeInMillis();
-        }
-
-        return dueDate;
-    }
-
-    private static void saveUpdatedData(Context context, int appWidgetId, JSONArray updatedData) {
-        if (updatedData == null) return;
-        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME + appWidgetId, Context.MODE_PRIVATE);
-        prefs.edit().putString(CARDS_DATA_KEY, updatedData.toString()).apply();
-        Log.d(TAG, "Updated overdue dates for widget " + appWidgetId);
-    }
-
-    private static class ParseResult {
-        final List<CardData> cardData;
-        final JSONArray updatedData;
-        final boolean dataUpdated;
-        
-        ParseResult(List<CardData> cardData, JSONArray updatedData, boolean dataUpdated) {
-            this.cardData = cardData;
-            this.updatedData = updatedData;
-            this.dataUpdated = dataUpdated;
-        }
-    }
-    
-    private static class CardData {
-        final String name;
-        final long dueDate;
-
-        CardData(String name, long dueDate) {
-            this.name = name != null ? name : "Credit Card";
-            this.dueDate = dueDate;
-        }
-    }
-
-    private static class DaysDisplayInfo {
-        final String text;
-        final String label;
-        final int color;
-
-        DaysDisplayInfo(String text, String label, int color) {
-            this.text = text != null ? text : "--";
-            this.label = label;
-            this.color = color;
-        }
+    @Override
+    public void onDisabled(Context context) {
+        UpdateScheduler.cancel(context);
+        CardStore.getInstance(context).flush();
+        super.onDisabled(context);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,213 @@
+package com.developer.harshul.pinvoke;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Allocation-free local date arithmetic on epoch days, replacing the Calendar and
+ * SimpleDateFormat instances the widget used to create per card on every update.
+ *
+ * <p>Wall-clock to UTC conversion follows GregorianCalendar, including its handling of DST gaps,
+ * so results match the Calendar code this replaces.
+ */
+final class DateMath {
+
+    static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private static final int LEAP_YEAR = 2000;
+    private static final long PLAUSIBLE_RANGE_MILLIS = TimeUnit.DAYS.toMillis(5 * 365);
+    private static final ConcurrentHashMap<Locale, String[]> monthDayTables = new ConcurrentHashMap<>();
+
+    // TimeZone.getDefault() returns a fresh clone on every call, so the zone is cached and only
+    // re-read when the system reports a time zone change.
+    private static volatile TimeZone timeZone = TimeZone.getDefault();
+
+    private DateMath() {
+    }
+
+    static void refreshTimeZone() {
+        timeZone = TimeZone.getDefault();
+    }
+
+    static int zoneOffset(long millis) {
+        return timeZone.getOffset(millis);
+    }
+
+    static long localEpochDay(long millis) {
+        return Math.floorDiv(millis + timeZone.getOffset(millis), DAY_MILLIS);
+    }
+
+    static long startOfDay(long epochDay) {
+        return fromLocalMillis(epochDay * DAY_MILLIS);
+    }
+
+    // Uses the offsets in force around that wall time rather than the zone's current raw offset,
+    // since zones have moved their base offset over the years. Offsets stay within a day, so the
+    // offsets a day either side are the ones that can apply.
+    static long fromLocalMillis(long localMillis) {
+        TimeZone zone = timeZone;
+        int before = zone.getOffset(localMillis - DAY_MILLIS);
+        int after = zone.getOffset(localMillis + DAY_MILLIS);
+        if (before == after) {
+            return localMillis - before;
+        }
+        boolean beforeValid = zone.getOffset(localMillis - before) == before;
+        boolean afterValid = zone.getOffset(localMillis - after) == after;
+        if (beforeValid != afterValid) {
+            return localMillis - (beforeValid ? before : after);
+        }
+        if (beforeValid) {
+            // The wall time happens twice; like Calendar, take the later one.
+            return localMillis - Math.min(before, after);
+        }
+        // The wall time falls in a gap; like Calendar, read it with the offset from before the
+        // transition, which lands just after it.
+        return localMillis - before;
+    }
+
+    // Packed as (year << 9) | (month << 5) | dayOfMonth with a 1-based month, so a single int can
+    // be returned without allocating. See http://howardhinnant.github.io/date_algorithms.html
+    static int civilFromDays(long epochDay) {
+        long z = epochDay + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long mp = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        int year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+        return (year << 9) | (month << 5) | day;
+    }
+
+    static int year(int civil) {
+        return civil >> 9;
+    }
+
+    static int month(int civil) {
+        return (civil >> 5) & 0xf;
+    }
+
+    static int dayOfMonth(int civil) {
+        return civil & 0x1f;
+    }
+
+    static long daysFromCivil(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return isLeapYear(year) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    static boolean isLeapYear(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    // Epoch day of dayOfMonth in the month after the one containing epochDay, clamped to that
+    // month's length, matching Calendar.add(MONTH, 1) followed by set(DAY_OF_MONTH, ...).
+    static long dayInNextMonth(long epochDay, int dayOfMonth) {
+        int civil = civilFromDays(epochDay);
+        int year = year(civil);
+        int month = month(civil) + 1;
+        if (month > 12) {
+            month = 1;
+            year++;
+        }
+        return daysFromCivil(year, month, Math.min(dayOfMonth, lengthOfMonth(year, month)));
+    }
+
+    static long updateOverdueDateToNextMonth(long dueDate, long currentTime) {
+        long currentDay = localEpochDay(currentTime);
+        long dueDay = localEpochDay(dueDate);
+        if (dueDay < currentDay) {
+            int dayOfMonth = dayOfMonth(civilFromDays(dueDay));
+            return startOfDay(dayInNextMonth(currentDay, dayOfMonth));
+        }
+        return dueDate;
+    }
+
+    // Anything more than about five years either side of now is treated as corrupt rather than
+    // shown. Shared by the config screen and imports so both accept the same dates.
+    static boolean isPlausibleDueDate(long dueDate, long currentTime) {
+        return dueDate >= currentTime - PLAUSIBLE_RANGE_MILLIS && dueDate <= currentTime + PLAUSIBLE_RANGE_MILLIS;
+    }
+
+    // Start of the local day written as yyyy-MM-dd, or Long.MIN_VALUE if the text is not a date.
+    static long parseIsoDate(CharSequence text) {
+        if (text.length() != 10 || text.charAt(4) != '-' || text.charAt(7) != '-') {
+            return Long.MIN_VALUE;
+        }
+        int year = parseDigits(text, 0, 4);
+        int month = parseDigits(text, 5, 7);
+        int day = parseDigits(text, 8, 10);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)) {
+            return Long.MIN_VALUE;
+        }
+        return startOfDay(daysFromCivil(year, month, day));
+    }
+
+    private static int parseDigits(CharSequence text, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    // The 15th of next month at the current wall-clock time.
+    static long defaultDueDate(long currentTime) {
+        long localTime = currentTime + timeZone.getOffset(currentTime);
+        long today = Math.floorDiv(localTime, DAY_MILLIS);
+        long timeOfDay = localTime - today * DAY_MILLIS;
+        return fromLocalMillis(dayInNextMonth(today, 15) * DAY_MILLIS + timeOfDay);
+    }
+
+    static String formatMonthDay(long millis, Locale locale) {
+        int civil = civilFromDays(localEpochDay(millis));
+        String[] table = monthDayTables.get(locale);
+        if (table == null) {
+            table = new String[12 * 31];
+            String[] existing = monthDayTables.putIfAbsent(locale, table);
+            if (existing != null) {
+                table = existing;
+            }
+        }
+
+        int cell = (month(civil) - 1) * 31 + dayOfMonth(civil) - 1;
+        String formatted = table[cell];
+        if (formatted == null) {
+            // Filled lazily with the exact SimpleDateFormat output. Racing threads write equal
+            // immutable strings, so no lock is needed.
+            SimpleDateFormat formatter = new SimpleDateFormat("MMM dd", locale);
+            formatter.setTimeZone(TimeZone.getTimeZone("UTC"));
+            long utcMidnight = daysFromCivil(LEAP_YEAR, month(civil), dayOfMonth(civil)) * DAY_MILLIS;
+            formatted = formatter.format(new Date(utcMidnight));
+            table[cell] = formatted;
+        }
+        return formatted;
+    }
+}
@@ -0,0 +1,111 @@
+package com.developer.harshul.pinvoke;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import androidx.core.content.ContextCompat;
+import java.util.Locale;
+
+/**
+ * Days-remaining text, label and colors for every state a card can show, resolved from resources
+ * once per locale rather than for each card on each render. Colors are resolved for both the day
+ * and night configurations up front, so a theme switch needs no resource lookups at all. Cards
+ * map to a state with {@link #stateOf(int)}; {@link #get(Context)} rebuilds the table when the
+ * locale it was built for no longer matches.
+ */
+final class DisplayStateTable {
+
+    static final int STATE_OVERDUE = 0;
+    static final int STATE_TODAY = 1;
+    // States 2..MAX_TABLE_DAYS + 1 are 1..MAX_TABLE_DAYS days remaining.
+    static final int MAX_TABLE_DAYS = 62;
+    // Anything further out; only the count has to be formatted.
+    static final int STATE_FAR = MAX_TABLE_DAYS + 2;
+
+    private static final int STATE_COUNT = STATE_FAR + 1;
+    private static final int WIDTHS = 2;
+
+    private static volatile DisplayStateTable current;
+
+    private final Locale locale;
+    private final String[][] texts = new String[WIDTHS][STATE_COUNT];
+    private final String[] labels = new String[STATE_COUNT];
+    private final int[] dayColors = new int[STATE_COUNT];
+    private final int[] nightColors = new int[STATE_COUNT];
+
+    private DisplayStateTable(Context context, Locale locale) {
+        this.locale = locale;
+
+        String due = context.getString(R.string.due);
+        String days = context.getString(R.string.days);
+        set(STATE_OVERDUE, context.getString(R.string.overdue), due, "");
+        set(STATE_TODAY, context.getString(R.string.today), due, "");
+        for (int d = 1; d <= MAX_TABLE_DAYS; d++) {
+            String count = String.valueOf(d);
+            set(STATE_TODAY + d, count, count, d == 1 ? context.getString(R.string.day) : days);
+        }
+        set(STATE_FAR, null, null, days);
+
+        resolveColors(withNightMode(context, Configuration.UI_MODE_NIGHT_NO), dayColors);
+        resolveColors(withNightMode(context, Configuration.UI_MODE_NIGHT_YES), nightColors);
+    }
+
+    private void set(int state, String regularText, String compactText, String label) {
+        texts[0][state] = regularText;
+        texts[1][state] = compactText;
+        labels[state] = label;
+    }
+
+    private static void resolveColors(Context context, int[] colors) {
+        int error = ContextCompat.getColor(context, R.color.error);
+        int warning = ContextCompat.getColor(context, R.color.warning);
+        int amber = ContextCompat.getColor(context, R.color.amber);
+        int success = ContextCompat.getColor(context, R.color.success);
+        colors[STATE_OVERDUE] = error;
+        colors[STATE_TODAY] = error;
+        for (int d = 1; d <= MAX_TABLE_DAYS; d++) {
+            colors[STATE_TODAY + d] = d <= 3 ? warning : d <= 7 ? amber : success;
+        }
+        colors[STATE_FAR] = success;
+    }
+
+    private static Context withNightMode(Context context, int nightMode) {
+        Configuration configuration = new Configuration(context.getResources().getConfiguration());
+        configuration.uiMode = (configuration.uiMode & ~Configuration.UI_MODE_NIGHT_MASK) | nightMode;
+        return context.createConfigurationContext(configuration);
+    }
+
+    static DisplayStateTable get(Context context) {
+        Locale locale = Locale.getDefault();
+        DisplayStateTable table = current;
+        if (table == null || !table.locale.equals(locale)) {
+            table = new DisplayStateTable(context, locale);
+            current = table;
+        }
+        return table;
+    }
+
+    static int stateOf(int daysRemaining) {
+        if (daysRemaining < 0) return STATE_OVERDUE;
+        if (daysRemaining > MAX_TABLE_DAYS) return STATE_FAR;
+        return STATE_TODAY + daysRemaining;
+    }
+
+    String text(int state, int sizeClass, int daysRemaining) {
+        if (state == STATE_FAR) {
+            return String.valueOf(daysRemaining);
+        }
+        return texts[sizeClass == SizeClass.COMPACT ? 1 : 0][state];
+    }
+
+    String label(int state) {
+        return labels[state];
+    }
+
+    int dayColor(int state) {
+        return dayColors[state];
+    }
+
+    int nightColor(int state) {
+        return nightColors[state];
+    }
+}
@@ -0,0 +1,97 @@
+package com.developer.harshul.pinvoke;
+
+import java.util.Arrays;
+
+/**
+ * Every stored card's due date across all widgets, kept sorted so "what is due next" is a binary
+ * search instead of a load per widget. Entries are keyed by store slot; {@link CardStore} updates
+ * the index under its own lock whenever it writes, patches or frees a record, so the index never
+ * needs rebuilding after the store has been opened.
+ */
+final class DueIndex {
+
+    private static final long ABSENT = Long.MIN_VALUE;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] dueDates = new long[INITIAL_CAPACITY];
+    private int[] slots = new int[INITIAL_CAPACITY];
+    private int size;
+    // Due date currently indexed for each slot, so a slot's entry can be found without a scan.
+    private long[] slotDueDates = new long[0];
+
+    void put(int slot, long dueDate) {
+        if (slot < slotDueDates.length && slotDueDates[slot] == dueDate) {
+            return;
+        }
+        remove(slot);
+        if (slot >= slotDueDates.length) {
+            int oldLength = slotDueDates.length;
+            slotDueDates = Arrays.copyOf(slotDueDates, Math.max(slot + 1, oldLength * 2));
+            Arrays.fill(slotDueDates, oldLength, slotDueDates.length, ABSENT);
+        }
+        if (size == dueDates.length) {
+            dueDates = Arrays.copyOf(dueDates, size * 2);
+            slots = Arrays.copyOf(slots, size * 2);
+        }
+
+        int index = lowerBound(dueDate, slot);
+        System.arraycopy(dueDates, index, dueDates, index + 1, size - index);
+        System.arraycopy(slots, index, slots, index + 1, size - index);
+        dueDates[index] = dueDate;
+        slots[index] = slot;
+        size++;
+        slotDueDates[slot] = dueDate;
+    }
+
+    void remove(int slot) {
+        if (slot >= slotDueDates.length || slotDueDates[slot] == ABSENT) {
+            return;
+        }
+        int index = lowerBound(slotDueDates[slot], slot);
+        System.arraycopy(dueDates, index + 1, dueDates, index, size - index - 1);
+        System.arraycopy(slots, index + 1, slots, index, size - index - 1);
+        size--;
+        slotDueDates[slot] = ABSENT;
+    }
+
+    void clear() {
+        size = 0;
+        Arrays.fill(slotDueDates, ABSENT);
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Position of the first entry due at or after the given time, or size() if there is none.
+    int ceiling(long time) {
+        return lowerBound(time, Integer.MIN_VALUE);
+    }
+
+    long dueDate(int index) {
+        return dueDates[index];
+    }
+
+    int slot(int index) {
+        return slots[index];
+    }
+
+    long[] dueDates() {
+        return Arrays.copyOf(dueDates, size);
+    }
+
+    // Entries are ordered by due date, then slot, so equal dates still have one exact position.
+    private int lowerBound(long dueDate, int slot) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (dueDates[mid] < dueDate || (dueDates[mid] == dueDate && slots[mid] < slot)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,26 @@
+package com.developer.harshul.pinvoke;
+
+/**
+ * 64-bit FNV-1a over the bytes of each mixed-in value, used to fingerprint what a widget or tile
+ * shows. Free of Android classes so it can be used from plain JUnit tests.
+ */
+final class Fingerprint {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private Fingerprint() {
+    }
+
+    static long newFingerprint() {
+        return FNV_OFFSET_BASIS;
+    }
+
+    static long mix(long fingerprint, long value) {
+        for (int i = 0; i < 8; i++) {
+            fingerprint ^= (value >>> (i * 8)) & 0xff;
+            fingerprint *= FNV_PRIME;
+        }
+        return fingerprint;
+    }
+}
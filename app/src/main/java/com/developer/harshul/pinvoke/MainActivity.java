@@ -1,12 +1,44 @@
 package com.developer.harshul.pinvoke;
 
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.View;
+import android.widget.TextView;
+import android.util.Log;
 import android.widget.Toast;
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import com.google.android.material.button.MaterialButton;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class MainActivity extends AppCompatActivity {
 
+    private static final String TAG = "MainActivity";
+
+    private TextView nextDueText;
+    private TextView transferStatusText;
+    private MaterialButton importButton;
+    private MaterialButton exportButton;
+    private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ActivityResultLauncher<String[]> importLauncher =
+            registerForActivityResult(new ActivityResultContracts.OpenDocument(), this::importCards);
+    private final ActivityResultLauncher<String> exportCsvLauncher =
+            registerForActivityResult(new ActivityResultContracts.CreateDocument("text/csv"), this::exportCards);
+    private final ActivityResultLauncher<String> exportJsonLauncher =
+            registerForActivityResult(new ActivityResultContracts.CreateDocument("application/json"), this::exportCards);
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -14,12 +46,141 @@ public class MainActivity extends AppCompatActivity {
         setupViews();
     }
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+        loadNextDue();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        executorService.shutdown();
+    }
+
     private void setupViews() {
+        nextDueText = findViewById(R.id.next_due_text);
+        transferStatusText = findViewById(R.id.transfer_status_text);
+        importButton = findViewById(R.id.import_cards_button);
+        exportButton = findViewById(R.id.export_cards_button);
+        importButton.setOnClickListener(v -> importLauncher.launch(new String[]{"text/*", "application/json"}));
+        exportButton.setOnClickListener(v -> chooseExportFormat());
         MaterialButton addWidgetButton = findViewById(R.id.add_widget_button);
         addWidgetButton.setOnClickListener(v -> openWidgetPicker());
+        if ((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+            addWidgetButton.setOnLongClickListener(v -> {
+                showWidgetMetrics();
+                return true;
+            });
+        }
+    }
+
+    // Soonest card across every widget, from the store's due index.
+    private void loadNextDue() {
+        Context appContext = getApplicationContext();
+        long today = DateMath.startOfDay(DateMath.localEpochDay(WidgetClock.now()));
+        executorService.execute(() -> {
+            CardBuffer next = new CardBuffer();
+            boolean found = CardStore.getInstance(appContext).nextDue(today, next);
+            mainHandler.post(() -> {
+                if (isDestroyed()) {
+                    return;
+                }
+                if (found) {
+                    nextDueText.setText(getString(R.string.next_due, next.names[0],
+                            DateMath.formatMonthDay(next.dueDates[0], Locale.getDefault())));
+                    nextDueText.setVisibility(View.VISIBLE);
+                } else {
+                    nextDueText.setVisibility(View.GONE);
+                }
+            });
+        });
+    }
+
+    private void importCards(Uri uri) {
+        if (uri == null) {
+            return;
+        }
+        Context appContext = getApplicationContext();
+        setTransferRunning(true);
+        executorService.execute(() -> {
+            String status;
+            try {
+                CardTransfer.Result result = CardTransfer.importCards(appContext, uri,
+                        rows -> mainHandler.post(() -> transferStatusText.setText(getString(R.string.import_progress, rows))));
+                status = getString(R.string.import_result, result.imported, result.widgets, result.rejected);
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "Error importing cards", e);
+                status = getString(R.string.import_failed);
+            }
+            showTransferResult(status);
+        });
+    }
+
+    // CardTransfer picks the format from the created document's type, so each format has its own
+    // launcher.
+    private void chooseExportFormat() {
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.export_format)
+                .setItems(new CharSequence[]{getString(R.string.export_csv), getString(R.string.export_json)}, (dialog, which) -> {
+                    if (which == CardTransfer.FORMAT_JSON) {
+                        exportJsonLauncher.launch("cards.json");
+                    } else {
+                        exportCsvLauncher.launch("cards.csv");
+                    }
+                })
+                .show();
+    }
+
+    private void exportCards(Uri uri) {
+        if (uri == null) {
+            return;
+        }
+        Context appContext = getApplicationContext();
+        setTransferRunning(true);
+        executorService.execute(() -> {
+            String status;
+            try {
+                status = getString(R.string.export_result, CardTransfer.export(appContext, uri));
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "Error exporting cards", e);
+                status = getString(R.string.export_failed);
+            }
+            showTransferResult(status);
+        });
+    }
+
+    private void showTransferResult(String status) {
+        mainHandler.post(() -> {
+            if (isDestroyed()) {
+                return;
+            }
+            setTransferRunning(false);
+            transferStatusText.setText(status);
+            loadNextDue();
+        });
+    }
+
+    private void setTransferRunning(boolean running) {
+        importButton.setEnabled(!running);
+        exportButton.setEnabled(!running);
+        transferStatusText.setVisibility(View.VISIBLE);
+        if (running) {
+            transferStatusText.setText(R.string.transfer_running);
+        }
     }
 
     private void openWidgetPicker() {
         Toast.makeText(this, R.string.long_press_on_home_screen_and_select_widgets, Toast.LENGTH_LONG).show();
     }
-}
\ No newline at end of file
+
+    private void showWidgetMetrics() {
+        StringWriter metrics = new StringWriter();
+        WidgetMetrics.dump(new PrintWriter(metrics));
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.widget_metrics)
+                .setMessage(metrics.toString())
+                .setPositiveButton(android.R.string.ok, null)
+                .show();
+    }
+}
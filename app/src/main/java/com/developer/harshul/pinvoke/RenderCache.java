@@ -0,0 +1,149 @@
+package com.developer.harshul.pinvoke;
+
+import android.util.SparseIntArray;
+import android.util.SparseLongArray;
+import android.widget.RemoteViews;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers {@link Fingerprint}s of what each widget last pushed to the launcher, so an update whose
+ * inputs are unchanged can be skipped. The structure fingerprint covers the outer layout (night
+ * mode, locale, time zone), which needs a full update; the display fingerprint covers the cards
+ * served by {@link CardViewsFactory} (names, order, due dates, days remaining, size class), which
+ * only need a data-changed notification. The size class is also kept on its own so a resize can be
+ * dismissed without loading the widget's cards.
+ *
+ * <p>The last layout each widget was successfully updated with is also kept, for a few widgets,
+ * together with the cards it was showing, so a failed update can put both back instead of showing
+ * the error view. While a snapshot is restored, {@link CardViewsFactory} serves its cards in place
+ * of the store's.
+ *
+ * <p>Each render of a widget is numbered by {@link #beginRender}. A render that was given up on
+ * keeps running in the background, so its fingerprints and snapshot are only taken while it is
+ * still the widget's latest.
+ */
+final class RenderCache {
+
+    private static final long NO_FINGERPRINT = 0L;
+    private static final int MAX_SNAPSHOTS = 8;
+
+    private static final SparseLongArray structureFingerprints = new SparseLongArray();
+    private static final SparseLongArray displayFingerprints = new SparseLongArray();
+    private static final SparseIntArray sizeClasses = new SparseIntArray();
+    // Never cleared, so a render abandoned before its widget was removed cannot match a new one.
+    private static final SparseLongArray generations = new SparseLongArray();
+    private static final LinkedHashMap<Integer, Snapshot> snapshots = new LinkedHashMap<Integer, Snapshot>(MAX_SNAPSHOTS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Snapshot> eldest) {
+            return size() > MAX_SNAPSHOTS;
+        }
+    };
+
+    private RenderCache() {
+    }
+
+    static synchronized boolean isCurrent(int appWidgetId, long structureFingerprint, long displayFingerprint) {
+        return hasStructure(appWidgetId, structureFingerprint)
+                && displayFingerprints.get(appWidgetId, NO_FINGERPRINT) == displayFingerprint;
+    }
+
+    static synchronized boolean hasStructure(int appWidgetId, long structureFingerprint) {
+        return structureFingerprint != NO_FINGERPRINT
+                && structureFingerprints.get(appWidgetId, NO_FINGERPRINT) == structureFingerprint;
+    }
+
+    static synchronized int sizeClass(int appWidgetId) {
+        return sizeClasses.get(appWidgetId, SizeClass.UNKNOWN);
+    }
+
+    // Starts a new render of the widget, making every earlier one stale.
+    static synchronized long beginRender(int appWidgetId) {
+        long generation = generations.get(appWidgetId, 0L) + 1;
+        generations.put(appWidgetId, generation);
+        return generation;
+    }
+
+    static synchronized boolean isLatestRender(int appWidgetId, long generation) {
+        return generations.get(appWidgetId, 0L) == generation;
+    }
+
+    static synchronized boolean put(int appWidgetId, long generation, long structureFingerprint, long displayFingerprint, int sizeClass) {
+        if (!isLatestRender(appWidgetId, generation)) {
+            return false;
+        }
+        structureFingerprints.put(appWidgetId, structureFingerprint);
+        displayFingerprints.put(appWidgetId, displayFingerprint);
+        sizeClasses.put(appWidgetId, sizeClass);
+        Snapshot snapshot = snapshots.get(appWidgetId);
+        if (snapshot != null) {
+            snapshot.restored = false;
+        }
+        return true;
+    }
+
+    static synchronized void invalidate(int appWidgetId) {
+        structureFingerprints.delete(appWidgetId);
+        displayFingerprints.delete(appWidgetId);
+        sizeClasses.delete(appWidgetId);
+    }
+
+    static synchronized boolean putSnapshot(int appWidgetId, long generation, RemoteViews views, CardBuffer cards) {
+        if (!isLatestRender(appWidgetId, generation)) {
+            return false;
+        }
+        Snapshot snapshot = new Snapshot(views);
+        snapshot.cards.copyFrom(cards);
+        snapshots.put(appWidgetId, snapshot);
+        return true;
+    }
+
+    // Keeps the snapshot's cards in step with a data-changed update, which leaves the layout alone.
+    static synchronized boolean putCards(int appWidgetId, long generation, CardBuffer cards) {
+        if (!isLatestRender(appWidgetId, generation)) {
+            return false;
+        }
+        Snapshot snapshot = snapshots.get(appWidgetId);
+        if (snapshot != null) {
+            snapshot.cards.copyFrom(cards);
+        }
+        return true;
+    }
+
+    // The last good layout, with its cards now served in place of the store's until a render of
+    // the widget succeeds again. Null if none is kept.
+    static synchronized RemoteViews restoreSnapshot(int appWidgetId) {
+        Snapshot snapshot = snapshots.get(appWidgetId);
+        if (snapshot == null) {
+            return null;
+        }
+        snapshot.restored = true;
+        return snapshot.views;
+    }
+
+    // Copies the restored snapshot's cards into out. Returns false, leaving out alone, unless the
+    // widget is showing its snapshot.
+    static synchronized boolean restoredCards(int appWidgetId, CardBuffer out) {
+        Snapshot snapshot = snapshots.get(appWidgetId);
+        if (snapshot == null || !snapshot.restored) {
+            return false;
+        }
+        out.copyFrom(snapshot.cards);
+        return true;
+    }
+
+    static synchronized void remove(int appWidgetId) {
+        invalidate(appWidgetId);
+        snapshots.remove(appWidgetId);
+    }
+
+    private static final class Snapshot {
+        final RemoteViews views;
+        final CardBuffer cards = new CardBuffer();
+        boolean restored;
+
+        Snapshot(RemoteViews views) {
+            this.views = views;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.developer.harshul.pinvoke;
+
+import android.appwidget.AppWidgetManager;
+import android.os.Build;
+import android.os.Bundle;
+import android.util.SizeF;
+import java.util.List;
+
+/**
+ * Buckets a widget's reported size into the few layouts it actually renders differently, so a
+ * resize only triggers a redraw when it crosses a bucket boundary.
+ */
+final class SizeClass {
+
+    static final int UNKNOWN = -1;
+    static final int REGULAR = 0;
+    static final int COMPACT = 1;
+    // Regular text, but wide enough to draw cards as pre-rendered tiles.
+    static final int WIDE = 2;
+
+    private static final float COMPACT_MAX_WIDTH_DP = 180f;
+    private static final float WIDE_MIN_WIDTH_DP = 300f;
+
+    private SizeClass() {
+    }
+
+    static int of(AppWidgetManager appWidgetManager, int appWidgetId, Bundle options) {
+        return fromOptions(options != null ? options : appWidgetManager.getAppWidgetOptions(appWidgetId));
+    }
+
+    // Uses the narrowest size the launcher may show, which is the portrait width on phones and
+    // matches what OPTION_APPWIDGET_MIN_WIDTH reports on older launchers.
+    static int fromOptions(Bundle options) {
+        if (options == null) {
+            return REGULAR;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            List<SizeF> sizes = options.getParcelableArrayList(AppWidgetManager.OPTION_APPWIDGET_SIZES);
+            if (sizes != null && !sizes.isEmpty()) {
+                float minWidth = Float.MAX_VALUE;
+                for (SizeF size : sizes) {
+                    minWidth = Math.min(minWidth, size.getWidth());
+                }
+                return layoutFor(minWidth);
+            }
+        }
+        return layoutFor(options.getInt(AppWidgetManager.OPTION_APPWIDGET_MIN_WIDTH, 0));
+    }
+
+    // WIDE only renders differently from REGULAR when cards are drawn as tiles.
+    static int rendered(int sizeClass, boolean tiles) {
+        return sizeClass == WIDE && !tiles ? REGULAR : sizeClass;
+    }
+
+    // The text width class, split further into WIDE for layouts that can use card tiles.
+    static int layoutFor(float widthDp) {
+        int sizeClass = classify(widthDp);
+        return sizeClass == REGULAR && widthDp >= WIDE_MIN_WIDTH_DP ? WIDE : sizeClass;
+    }
+
+    static int classify(float widthDp) {
+        return widthDp > 0 && widthDp < COMPACT_MAX_WIDTH_DP ? COMPACT : REGULAR;
+    }
+}
@@ -0,0 +1,133 @@
+package com.developer.harshul.pinvoke;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+import android.util.LruCache;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Two-tier cache of rendered card tiles. Tiles are keyed by everything drawn into them (see
+ * {@link #key}), so a tile never has to be invalidated: a card whose count moves on gets a new key
+ * and its old tile ages out. The memory tier is an LRU bounded by bitmap bytes; the disk tier is
+ * a directory of PNGs in the app cache dir, trimmed oldest-first past {@link #MAX_DISK_BYTES}, so
+ * tiles survive the process being killed between updates.
+ */
+final class TileCache {
+
+    private static final String TAG = "TileCache";
+    private static final String DIRECTORY = "card_tiles";
+    private static final long MAX_DISK_BYTES = 8L * 1024 * 1024;
+    private static final int MAX_MEMORY_BYTES = 4 * 1024 * 1024;
+
+    private static TileCache instance;
+
+    private final File directory;
+    private final LruCache<String, Bitmap> memory;
+
+    static synchronized TileCache getInstance(Context context) {
+        if (instance == null) {
+            File directory = new File(context.getApplicationContext().getCacheDir(), DIRECTORY);
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                Log.w(TAG, "Cannot create " + directory + ", tiles will not be kept on disk");
+            }
+            int memoryBytes = (int) Math.min(MAX_MEMORY_BYTES, Runtime.getRuntime().maxMemory() / 16);
+            instance = new TileCache(directory, memoryBytes);
+        }
+        return instance;
+    }
+
+    private TileCache(File directory, int memoryBytes) {
+        this.directory = directory;
+        this.memory = new LruCache<String, Bitmap>(memoryBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getAllocationByteCount();
+            }
+        };
+    }
+
+    static String key(CardViewState state, int width, int height, int nightMode) {
+        long key = Fingerprint.mix(Fingerprint.newFingerprint(), state.name.hashCode());
+        key = Fingerprint.mix(key, state.dueDate.hashCode());
+        key = Fingerprint.mix(key, state.days.hashCode());
+        key = Fingerprint.mix(key, state.daysLabel.hashCode());
+        key = Fingerprint.mix(key, state.dayColor);
+        key = Fingerprint.mix(key, state.nightColor);
+        key = Fingerprint.mix(key, nightMode);
+        key = Fingerprint.mix(key, ((long) width << 32) | height);
+        return Long.toHexString(key);
+    }
+
+    Bitmap get(String key) {
+        Bitmap bitmap = memory.get(key);
+        if (bitmap != null) {
+            WidgetMetrics.increment(WidgetMetrics.TILE_MEMORY_HITS);
+            return bitmap;
+        }
+        File file = file(key);
+        if (file.isFile()) {
+            bitmap = BitmapFactory.decodeFile(file.getPath());
+            if (bitmap != null) {
+                // Modification time is the disk tier's recency.
+                file.setLastModified(System.currentTimeMillis());
+                memory.put(key, bitmap);
+                WidgetMetrics.increment(WidgetMetrics.TILE_DISK_HITS);
+                return bitmap;
+            }
+            Log.w(TAG, "Dropping unreadable tile " + file);
+            file.delete();
+        }
+        return null;
+    }
+
+    void put(String key, Bitmap bitmap) {
+        memory.put(key, bitmap);
+        File file = file(key);
+        // Per-thread name, since two widgets showing the same card may write the same tile at once.
+        File temp = new File(directory, key + "." + Thread.currentThread().getId() + ".tmp");
+        try (OutputStream out = new FileOutputStream(temp)) {
+            bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+        } catch (IOException e) {
+            Log.w(TAG, "Error writing tile " + file, e);
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            Log.w(TAG, "Error moving tile into place: " + file);
+            temp.delete();
+            return;
+        }
+        trimDisk();
+    }
+
+    private File file(String key) {
+        return new File(directory, key + ".png");
+    }
+
+    private synchronized void trimDisk() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        if (total <= MAX_DISK_BYTES) {
+            return;
+        }
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (int i = 0; i < files.length && total > MAX_DISK_BYTES; i++) {
+            long length = files[i].length();
+            if (files[i].delete()) {
+                total -= length;
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.developer.harshul.pinvoke;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.appwidget.AppWidgetManager;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.util.Log;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replaces periodic polling with a single alarm armed for the next instant at which any card's
+ * displayed state changes: its days-remaining count ticks over, it becomes overdue, or it rolls
+ * over to next month at local midnight.
+ */
+final class UpdateScheduler {
+
+    private static final String TAG = "UpdateScheduler";
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+    // Never fire sooner than this, so a rollover that fails to persist cannot spin the alarm.
+    private static final long MIN_DELAY_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private UpdateScheduler() {
+    }
+
+    static void reschedule(Context context) {
+        AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(context);
+        int[] appWidgetIds = appWidgetManager.getAppWidgetIds(new ComponentName(context, CreditCardWidgetProvider.class));
+        AlarmManager alarmManager = context.getSystemService(AlarmManager.class);
+        if (alarmManager == null) {
+            Log.w(TAG, "AlarmManager unavailable");
+            return;
+        }
+
+        long currentTime = WidgetClock.now();
+        long nextChange = nextChangeTime(context, appWidgetIds, currentTime);
+        PendingIntent pendingIntent = updatePendingIntent(context, appWidgetIds);
+
+        if (nextChange == Long.MAX_VALUE) {
+            alarmManager.cancel(pendingIntent);
+            Log.d(TAG, "No cards to track, update alarm cancelled");
+            return;
+        }
+
+        long triggerAt = Math.max(nextChange, currentTime + MIN_DELAY_MILLIS);
+        // RTC rather than RTC_WAKEUP: a widget only needs to be current when someone looks at it.
+        // Exact alarms only need permission from S on.
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.S || alarmManager.canScheduleExactAlarms()) {
+            alarmManager.setExact(AlarmManager.RTC, triggerAt, pendingIntent);
+        } else {
+            alarmManager.set(AlarmManager.RTC, triggerAt, pendingIntent);
+        }
+        Log.d(TAG, "Next widget update in " + TimeUnit.MILLISECONDS.toMinutes(triggerAt - currentTime) + " min");
+    }
+
+    static void cancel(Context context) {
+        AlarmManager alarmManager = context.getSystemService(AlarmManager.class);
+        if (alarmManager != null) {
+            alarmManager.cancel(updatePendingIntent(context, new int[0]));
+        }
+    }
+
+    private static long nextChangeTime(Context context, int[] appWidgetIds, long currentTime) {
+        long nextChange = Long.MAX_VALUE;
+        if (appWidgetIds == null || appWidgetIds.length == 0) {
+            return nextChange;
+        }
+
+        // Read from the store's due index, so no widget's cards have to be loaded.
+        for (long dueDate : CardStore.getInstance(context).dueDates()) {
+            nextChange = Math.min(nextChange, nextDisplayChange(dueDate, currentTime));
+        }
+        return nextChange;
+    }
+
+    // Mirrors CreditCardWidgetProvider: days remaining is the truncated day count between now and
+    // the due date, anything in (-1 day, 1 day) shows as TODAY, and overdue dates roll over once
+    // their calendar day has passed.
+    static long nextDisplayChange(long dueDate, long currentTime) {
+        long diff = dueDate - currentTime;
+        long nextChange;
+        if (diff >= DAY_MILLIS) {
+            nextChange = currentTime + diff % DAY_MILLIS + 1;
+        } else if (diff > -DAY_MILLIS) {
+            nextChange = dueDate + DAY_MILLIS;
+        } else {
+            nextChange = Long.MAX_VALUE;
+        }
+        return Math.min(nextChange, rolloverTime(dueDate));
+    }
+
+    private static long rolloverTime(long dueDate) {
+        return DateMath.startOfDay(DateMath.localEpochDay(dueDate) + 1);
+    }
+
+    private static PendingIntent updatePendingIntent(Context context, int[] appWidgetIds) {
+        Intent intent = new Intent(context, CreditCardWidgetProvider.class);
+        intent.setAction(AppWidgetManager.ACTION_APPWIDGET_UPDATE);
+        intent.putExtra(AppWidgetManager.EXTRA_APPWIDGET_IDS, appWidgetIds);
+        return PendingIntent.getBroadcast(context, 0, intent, PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+    }
+}
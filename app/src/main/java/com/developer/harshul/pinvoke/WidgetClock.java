@@ -0,0 +1,29 @@
+package com.developer.harshul.pinvoke;
+
+/**
+ * The wall clock everything that decides what a card shows reads from. Production code always
+ * uses the system clock; tests swap in their own source to replay days or months of updates
+ * deterministically.
+ */
+final class WidgetClock {
+
+    interface Source {
+        long currentTimeMillis();
+    }
+
+    private static final Source SYSTEM = System::currentTimeMillis;
+
+    private static volatile Source source = SYSTEM;
+
+    private WidgetClock() {
+    }
+
+    static long now() {
+        return source.currentTimeMillis();
+    }
+
+    // Pass null to go back to the system clock.
+    static void setSource(Source newSource) {
+        source = newSource != null ? newSource : SYSTEM;
+    }
+}
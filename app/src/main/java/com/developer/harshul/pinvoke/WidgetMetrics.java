@@ -0,0 +1,209 @@
+package com.developer.harshul.pinvoke;
+
+import android.os.Trace;
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Process-wide counters and latency histograms for the widget update path. Each timed stage is also
+ * a {@link Trace} section, so it shows up in systrace/Perfetto captures. Read the numbers with
+ * {@code adb shell dumpsys activity service com.developer.harshul.pinvoke/.CardWidgetService}
+ * while a widget is on screen, or from the debug dialog in {@link MainActivity}.
+ */
+final class WidgetMetrics {
+
+    static final int STAGE_STORE_READ = 0;
+    static final int STAGE_PARSE = 1;
+    static final int STAGE_ROLLOVER = 2;
+    static final int STAGE_RENDER = 3;
+    static final int STAGE_BINDER = 4;
+    static final int STAGE_UPDATE_PASS = 5;
+    static final int STAGE_FLUSH = 6;
+    static final int STAGE_RASTERIZE = 7;
+
+    private static final String[] STAGE_NAMES = {
+            "store_read", "parse", "rollover", "render", "binder", "update_pass", "flush", "rasterize"
+    };
+
+    // Built once so begin() does not concatenate a new string on every timed stage.
+    private static final String[] SECTION_NAMES = new String[STAGE_NAMES.length];
+
+    static final int WIDGETS_UPDATED = 0;
+    static final int WIDGETS_SKIPPED = 1;
+    static final int FULL_UPDATES = 2;
+    static final int DATA_CHANGES = 3;
+    static final int ERROR_STATES = 4;
+    static final int REQUESTS_COALESCED = 5;
+    static final int DEADLINES_MISSED = 6;
+    static final int RESIZES_DROPPED = 7;
+    static final int CACHE_HITS = 8;
+    static final int CACHE_MISSES = 9;
+    static final int RENDER_TIMEOUTS = 10;
+    static final int FALLBACKS = 11;
+    static final int RETRIES_SCHEDULED = 12;
+    static final int PAGES_COLLAPSED = 13;
+    static final int CARDS_FOLDED = 14;
+    static final int LAYOUTS_OVER_BUDGET = 15;
+    static final int TILE_MEMORY_HITS = 16;
+    static final int TILE_DISK_HITS = 17;
+    static final int TILES_DRAWN = 18;
+    static final int RENDERS_REJECTED = 19;
+    static final int TILES_OVER_BUDGET = 20;
+    static final int NOTIFY_CALLS = 21;
+
+    static final int SIZE_CARD_PAGE = 0;
+    static final int SIZE_WIDGET_PAGES = 1;
+    static final int SIZE_LAYOUT = 2;
+    static final int SIZE_TILE_BITMAP = 3;
+
+    private static final String[] SIZE_NAMES = {
+            "card_page", "widget_pages", "layout", "tile_bitmap"
+    };
+
+    private static final String[] COUNTER_NAMES = {
+            "widgets_updated", "widgets_skipped", "full_updates", "data_changes", "error_states",
+            "requests_coalesced", "deadlines_missed", "resizes_dropped", "cache_hits", "cache_misses",
+            "render_timeouts", "fallbacks", "retries_scheduled", "pages_collapsed", "cards_folded",
+            "layouts_over_budget", "tile_memory_hits", "tile_disk_hits", "tiles_drawn",
+            "renders_rejected", "tiles_over_budget", "notify_calls"
+    };
+
+    private static final Histogram[] histograms = new Histogram[STAGE_NAMES.length];
+    private static final Histogram[] sizes = new Histogram[SIZE_NAMES.length];
+    private static final AtomicLongArray counters = new AtomicLongArray(COUNTER_NAMES.length);
+
+    static {
+        for (int i = 0; i < histograms.length; i++) {
+            SECTION_NAMES[i] = "ccwidget:" + STAGE_NAMES[i];
+            histograms[i] = new Histogram();
+        }
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = new Histogram();
+        }
+    }
+
+    private WidgetMetrics() {
+    }
+
+    static long begin(int stage) {
+        Trace.beginSection(SECTION_NAMES[stage]);
+        return System.nanoTime();
+    }
+
+    static void end(int stage, long startNanos) {
+        histograms[stage].record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+        Trace.endSection();
+    }
+
+    static void increment(int counter) {
+        counters.incrementAndGet(counter);
+    }
+
+    static void add(int counter, long delta) {
+        if (delta != 0) {
+            counters.addAndGet(counter, delta);
+        }
+    }
+
+    static long count(int counter) {
+        return counters.get(counter);
+    }
+
+    // Estimated parcel size of what is sent to the launcher, in bytes.
+    static void recordSize(int size, int bytes) {
+        sizes[size].record(bytes);
+    }
+
+    static void dump(PrintWriter writer) {
+        writer.println("Widget update latency (us):");
+        writer.printf("  %-12s %8s %8s %8s %8s %8s%n", "stage", "count", "p50", "p90", "p99", "max");
+        for (int i = 0; i < histograms.length; i++) {
+            Histogram histogram = histograms[i];
+            writer.printf("  %-12s %8d %8d %8d %8d %8d%n", STAGE_NAMES[i], histogram.count(),
+                    histogram.percentile(0.5), histogram.percentile(0.9), histogram.percentile(0.99), histogram.max());
+        }
+        writer.println("Parcel sizes (bytes):");
+        writer.printf("  %-12s %8s %8s %8s %8s %8s%n", "views", "count", "p50", "p90", "p99", "max");
+        for (int i = 0; i < sizes.length; i++) {
+            Histogram histogram = sizes[i];
+            writer.printf("  %-12s %8d %8d %8d %8d %8d%n", SIZE_NAMES[i], histogram.count(),
+                    histogram.percentile(0.5), histogram.percentile(0.9), histogram.percentile(0.99), histogram.max());
+        }
+        writer.println("Counters:");
+        for (int i = 0; i < COUNTER_NAMES.length; i++) {
+            writer.printf("  %-20s %d%n", COUNTER_NAMES[i], counters.get(i));
+        }
+        writer.flush();
+    }
+
+    /**
+     * Log-linear histogram in the style of HdrHistogram: each power of two is split into
+     * {@code 2^SUB_BUCKET_BITS} equal buckets, so any recorded value is reported within 12.5%.
+     * Recording is lock-free and allocation-free.
+     */
+    static final class Histogram {
+
+        private static final int SUB_BUCKET_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int BUCKETS = (63 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong maxValue = new AtomicLong();
+
+        void record(long value) {
+            if (value < 0) value = 0;
+            buckets.incrementAndGet(indexOf(value));
+            long max;
+            while (value > (max = maxValue.get())) {
+                if (maxValue.compareAndSet(max, value)) break;
+            }
+        }
+
+        long count() {
+            long count = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                count += buckets.get(i);
+            }
+            return count;
+        }
+
+        long max() {
+            return maxValue.get();
+        }
+
+        // Highest value that falls in the bucket holding the given fraction of recordings.
+        long percentile(double fraction) {
+            long count = count();
+            if (count == 0) return 0;
+            long target = Math.max(1, (long) Math.ceil(fraction * count));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= target) {
+                    return Math.min(highestValueIn(i), max());
+                }
+            }
+            return max();
+        }
+
+        static int indexOf(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+        }
+
+        static long highestValueIn(int index) {
+            if (index < SUB_BUCKETS) {
+                return index;
+            }
+            int shift = index / SUB_BUCKETS - 1;
+            long lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+            return lowest + (1L << shift) - 1;
+        }
+    }
+}
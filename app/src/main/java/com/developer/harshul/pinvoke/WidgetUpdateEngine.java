@@ -0,0 +1,301 @@
+package com.developer.harshul.pinvoke;
+
+import android.appwidget.AppWidgetManager;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Bundle;
+import android.util.Log;
+import android.util.SparseArray;
+import android.widget.RemoteViews;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Updates a batch of widget ids in one pass. Each id is loaded and fingerprinted, then:
+ * <ul>
+ *   <li>unchanged widgets are skipped without any binder call,</li>
+ *   <li>widgets whose outer layout is unchanged but whose cards changed are refreshed together
+ *       with one {@code notifyAppWidgetViewDataChanged(int[], int)} call, after which the launcher
+ *       pulls the cards from {@link CardWidgetService},</li>
+ *   <li>everything else gets a full {@code updateAppWidget} of the outer layout. Those views carry
+ *       a per-id configure intent and adapter intent, so they are never shared between ids.</li>
+ * </ul>
+ *
+ * <p>Each widget is rendered as its own task. Every task is submitted up front and the pass waits
+ * for all of them against one shared deadline, so a widget that hangs does not push back the
+ * widgets after it. A widget that fails, misses the deadline or cannot be queued is put back to its
+ * last good layout and cards (or the error view if it has none) and retried with backoff by
+ * {@link WidgetUpdateQueue}. A render that missed the deadline cannot be stopped, so it is made
+ * stale and its results are dropped.
+ */
+final class WidgetUpdateEngine {
+
+    private static final String TAG = "WidgetUpdateEngine";
+    // Shared by every widget in a pass, and well inside the queue's broadcast deadline so a stuck
+    // widget still leaves time to put it back and finish the broadcast.
+    private static final long RENDER_DEADLINE_MILLIS = TimeUnit.SECONDS.toMillis(2);
+    private static final int MAX_RENDER_THREADS = 4;
+    private static final int MAX_QUEUED_RENDERS = 64;
+
+    private static final int OUTCOME_SKIPPED = 0;
+    private static final int OUTCOME_DATA_CHANGED = 1;
+    private static final int OUTCOME_FULL = 2;
+    private static final int OUTCOME_STALE = 3;
+
+    // Renders hand off to these threads only so they can be timed out. Renders that missed the
+    // deadline are cancelled and purged from the queue; if stuck renders hold every thread and the
+    // queue fills anyway, further renders are rejected rather than run on the calling worker.
+    private static final ThreadPoolExecutor renderExecutor = new ThreadPoolExecutor(MAX_RENDER_THREADS, MAX_RENDER_THREADS,
+            30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(MAX_QUEUED_RENDERS), runnable -> new Thread(runnable, "widget-render"),
+            new ThreadPoolExecutor.AbortPolicy());
+
+    static {
+        renderExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    private final Context context;
+    private final AppWidgetManager appWidgetManager;
+    private final boolean tilesEnabled;
+
+    WidgetUpdateEngine(Context context, AppWidgetManager appWidgetManager) {
+        this.context = context;
+        this.appWidgetManager = appWidgetManager;
+        this.tilesEnabled = context.getResources().getBoolean(R.bool.bitmap_tiles);
+    }
+
+    Stats update(int[] appWidgetIds, SparseArray<Bundle> options) {
+        long passStart = WidgetMetrics.begin(WidgetMetrics.STAGE_UPDATE_PASS);
+        Stats stats = new Stats();
+        long currentTime = WidgetClock.now();
+        long environment = environmentFingerprint(currentTime);
+        int[] changedIds = new int[appWidgetIds.length];
+        int changedCount = 0;
+
+        List<Future<Integer>> tasks = new ArrayList<>(appWidgetIds.length);
+        for (int appWidgetId : appWidgetIds) {
+            stats.widgets++;
+            Bundle widgetOptions = options.get(appWidgetId);
+            long generation = RenderCache.beginRender(appWidgetId);
+            // Renders run in parallel, so each widget loads into its own buffer.
+            CardBuffer cards = new CardBuffer();
+            Future<Integer> task = null;
+            try {
+                task = renderExecutor.submit(() -> render(appWidgetId, generation, cards, widgetOptions, currentTime, environment));
+            } catch (RejectedExecutionException e) {
+                Log.w(TAG, "Render queue full, dropping widget " + appWidgetId);
+                WidgetMetrics.increment(WidgetMetrics.RENDERS_REJECTED);
+                fail(appWidgetId);
+                stats.failed++;
+            }
+            tasks.add(task);
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RENDER_DEADLINE_MILLIS);
+        boolean abandoned = false;
+        for (int i = 0; i < appWidgetIds.length; i++) {
+            int appWidgetId = appWidgetIds[i];
+            Future<Integer> task = tasks.get(i);
+            if (task == null) {
+                continue;
+            }
+            try {
+                int outcome = task.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                WidgetUpdateQueue.getInstance().clearRetry(appWidgetId);
+                if (outcome == OUTCOME_SKIPPED || outcome == OUTCOME_STALE) {
+                    stats.skipped++;
+                    continue;
+                }
+                if (outcome == OUTCOME_DATA_CHANGED) {
+                    stats.dataChanged++;
+                } else {
+                    stats.fullUpdates++;
+                }
+                // A re-sent layout keeps its adapter intent, so the launcher may reuse the old
+                // adapter; notify those ids too.
+                changedIds[changedCount++] = appWidgetId;
+            } catch (TimeoutException e) {
+                abandon(appWidgetId, task);
+                abandoned = true;
+                Log.w(TAG, "Widget " + appWidgetId + " did not render within " + RENDER_DEADLINE_MILLIS + " ms");
+                WidgetMetrics.increment(WidgetMetrics.RENDER_TIMEOUTS);
+                fail(appWidgetId);
+                stats.failed++;
+            } catch (ExecutionException e) {
+                Log.e(TAG, "Error updating widget " + appWidgetId, e.getCause());
+                fail(appWidgetId);
+                stats.failed++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                Log.w(TAG, "Interrupted while updating widget " + appWidgetId);
+                for (int j = i; j < appWidgetIds.length; j++) {
+                    if (tasks.get(j) != null) {
+                        abandon(appWidgetIds[j], tasks.get(j));
+                    }
+                }
+                abandoned = true;
+                fail(appWidgetId);
+                stats.failed++;
+                break;
+            } catch (Exception e) {
+                Log.e(TAG, "Error updating widget " + appWidgetId, e);
+                fail(appWidgetId);
+                stats.failed++;
+            }
+        }
+        if (abandoned) {
+            // Renders cancelled before they started would otherwise hold queue slots until a
+            // thread reaches them.
+            renderExecutor.purge();
+        }
+
+        if (changedCount > 0) {
+            int[] ids = Arrays.copyOf(changedIds, changedCount);
+            long start = WidgetMetrics.begin(WidgetMetrics.STAGE_BINDER);
+            try {
+                appWidgetManager.notifyAppWidgetViewDataChanged(ids, R.id.cards_view_flipper);
+                stats.notifyCalls++;
+                WidgetMetrics.increment(WidgetMetrics.NOTIFY_CALLS);
+            } catch (Exception e) {
+                Log.e(TAG, "Error notifying widgets " + Arrays.toString(ids), e);
+                for (int appWidgetId : ids) {
+                    fail(appWidgetId);
+                }
+                stats.failed += ids.length;
+            } finally {
+                WidgetMetrics.end(WidgetMetrics.STAGE_BINDER, start);
+            }
+        }
+
+        WidgetMetrics.add(WidgetMetrics.WIDGETS_UPDATED, stats.widgets);
+        WidgetMetrics.add(WidgetMetrics.WIDGETS_SKIPPED, stats.skipped);
+        WidgetMetrics.add(WidgetMetrics.FULL_UPDATES, stats.fullUpdates);
+        WidgetMetrics.add(WidgetMetrics.DATA_CHANGES, stats.dataChanged);
+        WidgetMetrics.end(WidgetMetrics.STAGE_UPDATE_PASS, passStart);
+        Log.d(TAG, stats.toString());
+        return stats;
+    }
+
+    // One widget's load, fingerprint and (if needed) layout update. Runs on renderExecutor so a
+    // widget whose data hangs the render can be abandoned without holding up the rest. Once the
+    // render is no longer the widget's latest, it stops before touching the cache or the launcher.
+    private int render(int appWidgetId, long generation, CardBuffer cards, Bundle widgetOptions, long currentTime, long environment) {
+        CreditCardWidgetProvider.loadCards(context, appWidgetId, cards);
+        int sizeClass = cards.isEmpty() && widgetOptions == null ? SizeClass.REGULAR
+                : SizeClass.rendered(SizeClass.of(appWidgetManager, appWidgetId, widgetOptions), tilesEnabled);
+        long content = contentFingerprint(cards, currentTime, sizeClass);
+        if (tilesEnabled && sizeClass == SizeClass.WIDE) {
+            // Tiles have the theme drawn into them.
+            content = Fingerprint.mix(content, nightMode());
+        }
+
+        if (RenderCache.isCurrent(appWidgetId, environment, content)) {
+            return OUTCOME_SKIPPED;
+        }
+
+        // Recorded before the launcher is told, since CardViewsFactory reads the size class.
+        boolean layoutCurrent = RenderCache.hasStructure(appWidgetId, environment);
+        if (!RenderCache.put(appWidgetId, generation, environment, content, sizeClass)) {
+            return OUTCOME_STALE;
+        }
+        if (layoutCurrent) {
+            return RenderCache.putCards(appWidgetId, generation, cards) ? OUTCOME_DATA_CHANGED : OUTCOME_STALE;
+        }
+
+        long start = WidgetMetrics.begin(WidgetMetrics.STAGE_RENDER);
+        RemoteViews views;
+        try {
+            views = CreditCardWidgetProvider.buildRemoteViews(context, appWidgetId);
+        } finally {
+            WidgetMetrics.end(WidgetMetrics.STAGE_RENDER, start);
+        }
+        // The outer layout has nothing to collapse, so going over budget is only reported.
+        int bytes = WidgetViewRenderer.parcelSize(views);
+        WidgetMetrics.recordSize(WidgetMetrics.SIZE_LAYOUT, bytes);
+        if (bytes > context.getResources().getInteger(R.integer.widget_page_budget_bytes)) {
+            WidgetMetrics.increment(WidgetMetrics.LAYOUTS_OVER_BUDGET);
+            Log.w(TAG, "Widget " + appWidgetId + " layout is " + bytes + " bytes, over the page budget");
+        }
+        if (!RenderCache.isLatestRender(appWidgetId, generation)) {
+            return OUTCOME_STALE;
+        }
+        start = WidgetMetrics.begin(WidgetMetrics.STAGE_BINDER);
+        try {
+            appWidgetManager.updateAppWidget(appWidgetId, views);
+        } finally {
+            WidgetMetrics.end(WidgetMetrics.STAGE_BINDER, start);
+        }
+        return RenderCache.putSnapshot(appWidgetId, generation, views, cards) ? OUTCOME_FULL : OUTCOME_STALE;
+    }
+
+    // Loads do not stop on interrupt, so also make sure the render cannot report back.
+    private static void abandon(int appWidgetId, Future<Integer> task) {
+        task.cancel(true);
+        RenderCache.beginRender(appWidgetId);
+    }
+
+    private void fail(int appWidgetId) {
+        CreditCardWidgetProvider.showFallback(context, appWidgetManager, appWidgetId);
+        WidgetUpdateQueue.getInstance().retryLater(context, appWidgetId);
+    }
+
+    // From S the launcher applies the night color variants itself, so a theme switch leaves the
+    // layout as it is.
+    private long environmentFingerprint(long currentTime) {
+        long fingerprint = Fingerprint.newFingerprint();
+        if (!ConfigurationWatcher.LAUNCHER_APPLIES_NIGHT_COLORS) {
+            fingerprint = Fingerprint.mix(fingerprint, nightMode());
+        }
+        fingerprint = Fingerprint.mix(fingerprint, Locale.getDefault().hashCode());
+        return Fingerprint.mix(fingerprint, TimeZone.getDefault().getOffset(currentTime));
+    }
+
+    private int nightMode() {
+        return context.getResources().getConfiguration().uiMode & Configuration.UI_MODE_NIGHT_MASK;
+    }
+
+    // Everything the flipper's items show, so an unchanged fingerprint means the adapter would
+    // produce the same views.
+    private static long contentFingerprint(CardBuffer cards, long currentTime, int sizeClass) {
+        long fingerprint = Fingerprint.mix(Fingerprint.newFingerprint(), cards.size);
+        fingerprint = Fingerprint.mix(fingerprint, sizeClass);
+        for (int i = 0; i < cards.size; i++) {
+            int index = cards.order[i];
+            fingerprint = Fingerprint.mix(fingerprint, cards.names[index].hashCode());
+            fingerprint = Fingerprint.mix(fingerprint, cards.dueDates[index]);
+            fingerprint = Fingerprint.mix(fingerprint, CreditCardWidgetProvider.displayedDays(cards.dueDates[index], currentTime));
+        }
+        return fingerprint;
+    }
+
+    static final class Stats {
+        int widgets;
+        int skipped;
+        int fullUpdates;
+        int dataChanged;
+        int notifyCalls;
+        int failed;
+
+        // Every widget would otherwise cost one updateAppWidget transaction.
+        int binderCallsAvoided() {
+            return widgets - failed - fullUpdates - notifyCalls;
+        }
+
+        @Override
+        public String toString() {
+            return "Updated " + widgets + " widgets: full=" + fullUpdates
+                    + ", data changed=" + dataChanged + ", notify calls=" + notifyCalls
+                    + ", skipped=" + skipped + ", failed=" + failed
+                    + ", binder calls avoided=" + binderCallsAvoided();
+        }
+    }
+}
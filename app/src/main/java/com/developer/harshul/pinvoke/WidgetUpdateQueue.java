@@ -0,0 +1,348 @@
+package com.developer.harshul.pinvoke;
+
+import android.appwidget.AppWidgetManager;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs widget updates off the main thread on behalf of the provider's broadcasts.
+ *
+ * <p>Requests for an id that is already queued are coalesced into one render using the latest
+ * options. Queued ids are split across a small pool so independent widgets render in parallel,
+ * while an id that is mid-render waits for the next pass instead of racing it. Each broadcast's
+ * {@link BroadcastReceiver.PendingResult} is finished once all of its ids have rendered and the
+ * worker has synced the store, or when the deadline passes, whichever comes first.
+ *
+ * <p>A widget whose render failed is queued again on its own after an exponential backoff, and
+ * the backoff resets once it renders successfully.
+ */
+final class WidgetUpdateQueue {
+
+    private static final String TAG = "WidgetUpdateQueue";
+    private static final int POOL_SIZE = 2;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+    // goAsync() work has roughly 10 seconds before the system treats the receiver as hung.
+    private static final long DEADLINE_MILLIS = TimeUnit.SECONDS.toMillis(8);
+    // Dragging a resize handle delivers a burst of option changes; only the last one is rendered.
+    private static final long DEBOUNCE_MILLIS = 300;
+    private static final long RETRY_BASE_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final long RETRY_MAX_MILLIS = TimeUnit.MINUTES.toMillis(30);
+
+    private static WidgetUpdateQueue instance;
+
+    private final ThreadPoolExecutor executor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final SparseArray<Request> pending = new SparseArray<>();
+    private final SparseArray<Request> running = new SparseArray<>();
+    // Only touched on the main thread, where broadcasts are delivered.
+    private final SparseArray<Debounced> debounced = new SparseArray<>();
+    private final SparseArray<Runnable> retries = new SparseArray<>();
+    private final SparseIntArray retryAttempts = new SparseIntArray();
+    private int activeWorkers;
+    // Workers that have not yet finished their batches, including ones past claiming.
+    private int unfinishedWorkers;
+    private int coalesced;
+    private Context context;
+
+    static synchronized WidgetUpdateQueue getInstance() {
+        if (instance == null) {
+            instance = new WidgetUpdateQueue();
+        }
+        return instance;
+    }
+
+    private WidgetUpdateQueue() {
+        executor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "widget-update");
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    void enqueue(Context context, int[] appWidgetIds, Bundle options, BroadcastReceiver.PendingResult pendingResult) {
+        Batch batch = new Batch(pendingResult, appWidgetIds.length);
+        synchronized (this) {
+            this.context = context.getApplicationContext();
+            for (int appWidgetId : appWidgetIds) {
+                Request request = pending.get(appWidgetId);
+                if (request == null) {
+                    request = new Request(appWidgetId);
+                    pending.put(appWidgetId, request);
+                } else {
+                    coalesced++;
+                    WidgetMetrics.increment(WidgetMetrics.REQUESTS_COALESCED);
+                }
+                if (options != null) {
+                    request.options = options;
+                }
+                request.batches.add(batch);
+            }
+            startWorkersLocked();
+        }
+
+        if (pendingResult != null) {
+            mainHandler.postDelayed(batch.deadline, DEADLINE_MILLIS);
+        }
+    }
+
+    void enqueueDebounced(Context context, int appWidgetId, Bundle options, BroadcastReceiver.PendingResult pendingResult) {
+        Debounced previous = debounced.get(appWidgetId);
+        if (previous != null) {
+            mainHandler.removeCallbacks(previous);
+            if (previous.pendingResult != null) {
+                previous.pendingResult.finish();
+            }
+            WidgetMetrics.increment(WidgetMetrics.RESIZES_DROPPED);
+        }
+        Debounced next = new Debounced(context, appWidgetId, options, pendingResult);
+        debounced.put(appWidgetId, next);
+        mainHandler.postDelayed(next, DEBOUNCE_MILLIS);
+    }
+
+    void retryLater(Context context, int appWidgetId) {
+        Context appContext = context.getApplicationContext();
+        long delay;
+        synchronized (this) {
+            int attempt = retryAttempts.get(appWidgetId);
+            retryAttempts.put(appWidgetId, attempt + 1);
+            delay = retryDelay(attempt);
+        }
+        WidgetMetrics.increment(WidgetMetrics.RETRIES_SCHEDULED);
+        Log.d(TAG, "Retrying widget " + appWidgetId + " in " + delay + " ms");
+        mainHandler.post(() -> {
+            Runnable previous = retries.get(appWidgetId);
+            if (previous != null) {
+                mainHandler.removeCallbacks(previous);
+            }
+            Runnable retry = () -> {
+                retries.remove(appWidgetId);
+                enqueue(appContext, new int[]{appWidgetId}, null, null);
+            };
+            retries.put(appWidgetId, retry);
+            mainHandler.postDelayed(retry, delay);
+        });
+    }
+
+    void clearRetry(int appWidgetId) {
+        synchronized (this) {
+            if (retryAttempts.indexOfKey(appWidgetId) < 0) {
+                return;
+            }
+            retryAttempts.delete(appWidgetId);
+        }
+        mainHandler.post(() -> {
+            Runnable retry = retries.get(appWidgetId);
+            if (retry != null) {
+                mainHandler.removeCallbacks(retry);
+                retries.remove(appWidgetId);
+            }
+        });
+    }
+
+    // Blocks until every queued update has rendered and the store has been synced, or the timeout
+    // passes. Returns whether the queue went idle. Debounced resizes still waiting on the main
+    // thread are not counted.
+    synchronized boolean awaitIdle(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (pending.size() > 0 || unfinishedWorkers > 0) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            wait(remaining);
+        }
+        return true;
+    }
+
+    // 30s, 1m, 2m, ... capped at 30 minutes.
+    static long retryDelay(int attempt) {
+        return Math.min(RETRY_BASE_MILLIS << Math.min(attempt, 16), RETRY_MAX_MILLIS);
+    }
+
+    private void startWorkersLocked() {
+        int workers = Math.min(POOL_SIZE - activeWorkers, countRunnableLocked());
+        for (int i = 0; i < workers; i++) {
+            activeWorkers++;
+            unfinishedWorkers++;
+            executor.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        try {
+            drainPending();
+        } finally {
+            synchronized (this) {
+                unfinishedWorkers--;
+                notifyAll();
+            }
+        }
+    }
+
+    private void drainPending() {
+        List<Request> done = new ArrayList<>();
+        Context context = null;
+        while (true) {
+            List<Request> claimed = new ArrayList<>();
+            synchronized (this) {
+                claimLocked(claimed);
+                if (claimed.isEmpty()) {
+                    activeWorkers--;
+                    break;
+                }
+                context = this.context;
+            }
+
+            int[] appWidgetIds = new int[claimed.size()];
+            SparseArray<Bundle> options = new SparseArray<>();
+            for (int i = 0; i < appWidgetIds.length; i++) {
+                Request request = claimed.get(i);
+                appWidgetIds[i] = request.appWidgetId;
+                if (request.options != null) {
+                    options.put(request.appWidgetId, request.options);
+                }
+            }
+
+            try {
+                CreditCardWidgetProvider.updateAppWidgets(context, AppWidgetManager.getInstance(context), appWidgetIds, options);
+            } catch (Exception e) {
+                Log.e(TAG, "Error updating widgets", e);
+            }
+
+            synchronized (this) {
+                for (Request request : claimed) {
+                    running.remove(request.appWidgetId);
+                }
+            }
+            done.addAll(claimed);
+        }
+
+        if (done.isEmpty()) {
+            return;
+        }
+        // One sync covers every rollover written during this run, and happens before any of the
+        // broadcasts is finished and the process becomes eligible to be killed.
+        try {
+            CardStore.getInstance(context).flush();
+        } catch (Exception e) {
+            Log.e(TAG, "Error flushing card store", e);
+        }
+        for (Request request : done) {
+            for (Batch batch : request.batches) {
+                batch.complete();
+            }
+        }
+    }
+
+    // Takes this worker's share of the queued ids, skipping ids another worker is rendering.
+    private void claimLocked(List<Request> claimed) {
+        int runnable = countRunnableLocked();
+        if (runnable == 0) {
+            return;
+        }
+        int share = (runnable + activeWorkers - 1) / activeWorkers;
+        for (int i = pending.size() - 1; i >= 0 && claimed.size() < share; i--) {
+            Request request = pending.valueAt(i);
+            if (running.get(request.appWidgetId) != null) continue;
+            pending.removeAt(i);
+            running.put(request.appWidgetId, request);
+            claimed.add(request);
+        }
+        if (coalesced > 0) {
+            Log.d(TAG, "Coalesced " + coalesced + " duplicate update requests");
+            coalesced = 0;
+        }
+    }
+
+    private int countRunnableLocked() {
+        int runnable = 0;
+        for (int i = 0; i < pending.size(); i++) {
+            if (running.get(pending.keyAt(i)) == null) {
+                runnable++;
+            }
+        }
+        return runnable;
+    }
+
+    private final class Debounced implements Runnable {
+        final Context context;
+        final int appWidgetId;
+        final Bundle options;
+        final BroadcastReceiver.PendingResult pendingResult;
+
+        Debounced(Context context, int appWidgetId, Bundle options, BroadcastReceiver.PendingResult pendingResult) {
+            this.context = context;
+            this.appWidgetId = appWidgetId;
+            this.options = options;
+            this.pendingResult = pendingResult;
+        }
+
+        @Override
+        public void run() {
+            debounced.remove(appWidgetId);
+            enqueue(context, new int[]{appWidgetId}, options, pendingResult);
+        }
+    }
+
+    private static final class Request {
+        final int appWidgetId;
+        final List<Batch> batches = new ArrayList<>(1);
+        Bundle options;
+
+        Request(int appWidgetId) {
+            this.appWidgetId = appWidgetId;
+        }
+    }
+
+    private final class Batch {
+        private final BroadcastReceiver.PendingResult pendingResult;
+        private int remaining;
+        private boolean finished;
+        final Runnable deadline = this::expire;
+
+        Batch(BroadcastReceiver.PendingResult pendingResult, int remaining) {
+            this.pendingResult = pendingResult;
+            this.remaining = remaining;
+            if (remaining == 0) {
+                finish();
+            }
+        }
+
+        synchronized void complete() {
+            if (--remaining <= 0) {
+                finish();
+            }
+        }
+
+        private synchronized void expire() {
+            if (!finished) {
+                Log.w(TAG, "Update deadline passed with " + remaining + " widgets outstanding");
+                WidgetMetrics.increment(WidgetMetrics.DEADLINES_MISSED);
+                finish();
+            }
+        }
+
+        private synchronized void finish() {
+            if (finished) return;
+            finished = true;
+            mainHandler.removeCallbacks(deadline);
+            if (pendingResult != null) {
+                pendingResult.finish();
+            }
+        }
+    }
+}
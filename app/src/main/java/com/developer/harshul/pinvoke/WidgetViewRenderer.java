@@ -0,0 +1,230 @@
+package com.developer.harshul.pinvoke;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.os.Parcel;
+import android.util.Log;
+import android.widget.RemoteViews;
+import java.util.HashMap;
+
+/**
+ * Compiles a {@link WidgetViewState} into the flipper pages of one widget and keeps them within
+ * the parcel budgets in {@code integers.xml}. Each page's parcel size is estimated as it is built:
+ * a page over {@code widget_page_budget_bytes} is rebuilt with its name collapsed, and when the
+ * pages together go over {@code widget_pages_budget_bytes} the cards that do not fit are folded
+ * into one summary page showing the nearest of them and how many there are.
+ *
+ * <p>Wide widgets can have their pages drawn as bitmap tiles by {@link CardTileRenderer} instead
+ * of sent as text views. A tile's bitmap is held to {@code widget_tile_budget_bytes} rather than
+ * the parcel budgets, which it would never fit; a card whose tile page does not fit is sent as
+ * text, and its tile is not cached.
+ *
+ * <p>Pages are cached by state, so a reload only builds pages whose text or color changed.
+ */
+final class WidgetViewRenderer {
+
+    private static final String TAG = "WidgetViewRenderer";
+
+    private final Context context;
+    private final int pageBudget;
+    private final int pagesBudget;
+    private final int tileBudget;
+    private HashMap<CardViewState, Page> pages = new HashMap<>();
+    private boolean tiles;
+    private int nightMode;
+    private CardTileRenderer tileRenderer;
+
+    WidgetViewRenderer(Context context) {
+        this.context = context;
+        this.pageBudget = context.getResources().getInteger(R.integer.widget_page_budget_bytes);
+        this.pagesBudget = context.getResources().getInteger(R.integer.widget_pages_budget_bytes);
+        this.tileBudget = context.getResources().getInteger(R.integer.widget_tile_budget_bytes);
+    }
+
+    Pages render(WidgetViewState state) {
+        int currentNightMode = context.getResources().getConfiguration().uiMode & Configuration.UI_MODE_NIGHT_MASK;
+        boolean themeChanged = currentNightMode != nightMode;
+        nightMode = currentNightMode;
+        if (themeChanged) {
+            tileRenderer = null;
+        }
+        // Pages only bake in the theme when they are tiles or the launcher cannot pick colors.
+        if (state.tiles != tiles || (themeChanged && (tiles || !ConfigurationWatcher.LAUNCHER_APPLIES_NIGHT_COLORS))) {
+            tiles = state.tiles;
+            pages.clear();
+        }
+        HashMap<CardViewState, Page> built = new HashMap<>();
+        int count = state.size();
+        Page[] cardPages = new Page[count];
+        int[] bytes = new int[count];
+        for (int i = 0; i < count; i++) {
+            cardPages[i] = page(state.card(i), built);
+            bytes[i] = cardPages[i].bytes;
+        }
+
+        int kept = count;
+        Page summary = null;
+        if (count > 1 && sum(bytes, count) > pagesBudget) {
+            // Sized with the widest count it could show; the real one is built once kept is known.
+            int summaryBytes = newPage(state.card(count - 1).withName(context.getString(R.string.more_cards, count)), false).bytes;
+            kept = fit(bytes, count, summaryBytes, pagesBudget);
+            summary = page(state.card(kept).withName(context.getString(R.string.more_cards, count - kept)), built);
+            WidgetMetrics.add(WidgetMetrics.CARDS_FOLDED, count - kept);
+            Log.w(TAG, "Cards over the " + pagesBudget + " byte budget, folded " + (count - kept) + " of " + count + " into a summary");
+        }
+
+        RemoteViews[] views = new RemoteViews[summary == null ? kept : kept + 1];
+        int total = 0;
+        for (int i = 0; i < kept; i++) {
+            views[i] = cardPages[i].views;
+            total += cardPages[i].bytes;
+        }
+        if (summary != null) {
+            views[kept] = summary.views;
+            total += summary.bytes;
+        }
+        WidgetMetrics.recordSize(WidgetMetrics.SIZE_WIDGET_PAGES, total);
+        pages = built;
+        return new Pages(views, kept, total);
+    }
+
+    // Number of leading pages to keep so that they and a summary page of summaryBytes stay within
+    // budget. All of them if they fit without a summary, and never fewer than one.
+    static int fit(int[] pageBytes, int count, int summaryBytes, int budget) {
+        if (sum(pageBytes, count) <= budget) {
+            return count;
+        }
+        int kept = 0;
+        int total = summaryBytes;
+        while (kept < count - 1 && total + pageBytes[kept] <= budget) {
+            total += pageBytes[kept];
+            kept++;
+        }
+        return Math.max(kept, 1);
+    }
+
+    private static int sum(int[] values, int count) {
+        int sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += values[i];
+        }
+        return sum;
+    }
+
+    private Page page(CardViewState state, HashMap<CardViewState, Page> built) {
+        Page page = built.get(state);
+        if (page == null) {
+            page = pages.get(state);
+        }
+        if (page == null) {
+            page = newPage(state, true);
+            WidgetMetrics.recordSize(WidgetMetrics.SIZE_CARD_PAGE, page.bytes);
+        }
+        built.put(state, page);
+        return page;
+    }
+
+    private Page newPage(CardViewState state, boolean record) {
+        if (tiles) {
+            if (tileRenderer == null) {
+                tileRenderer = new CardTileRenderer(context);
+            }
+            Bitmap tile = tileRenderer.tile(state);
+            RemoteViews views = buildTile(state, tile);
+            // The bitmap goes across as a blob the parcel's data size leaves out.
+            int bytes = parcelSize(views);
+            int tileBytes = tile.getAllocationByteCount();
+            if (bytes <= pageBudget && tileBytes <= tileBudget) {
+                tileRenderer.keep(tile);
+                return new Page(views, bytes);
+            }
+            if (record) {
+                Log.w(TAG, "Tile page is " + bytes + " bytes with a " + tileBytes + " byte bitmap, over budget; sending text");
+                WidgetMetrics.increment(WidgetMetrics.TILES_OVER_BUDGET);
+            }
+        }
+        RemoteViews views = buildText(state);
+        int bytes = parcelSize(views);
+        if (bytes > pageBudget) {
+            if (record) {
+                Log.w(TAG, "Card page is " + bytes + " bytes, over the " + pageBudget + " byte budget; collapsing");
+                WidgetMetrics.increment(WidgetMetrics.PAGES_COLLAPSED);
+            }
+            views = buildText(state.collapsed());
+            bytes = parcelSize(views);
+        }
+        return new Page(views, bytes);
+    }
+
+    RemoteViews buildText(CardViewState state) {
+        RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.widget_card_item);
+        views.setTextViewText(R.id.card_name, state.name);
+        views.setTextViewText(R.id.due_date, state.dueDate);
+        views.setTextViewText(R.id.days_remaining, state.days);
+        if (ConfigurationWatcher.LAUNCHER_APPLIES_NIGHT_COLORS) {
+            // The launcher picks the variant for its own theme, so a theme switch needs no update.
+            views.setColorInt(R.id.days_remaining, "setTextColor", state.dayColor, state.nightColor);
+        } else {
+            views.setTextColor(R.id.days_remaining, state.color(nightMode == Configuration.UI_MODE_NIGHT_YES));
+        }
+        views.setTextViewText(R.id.days_label, state.daysLabel);
+        views.setOnClickFillInIntent(R.id.widget_item_container, new Intent());
+        return views;
+    }
+
+    RemoteViews buildTile(CardViewState state, Bitmap tile) {
+        RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.widget_card_tile);
+        views.setImageViewBitmap(R.id.card_tile, tile);
+        views.setContentDescription(R.id.card_tile, state.name + ", " + state.dueDate + ", " + state.days + " " + state.daysLabel);
+        views.setOnClickFillInIntent(R.id.widget_item_container, new Intent());
+        return views;
+    }
+
+    static int parcelSize(RemoteViews views) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            views.writeToParcel(parcel, 0);
+            return parcel.dataSize();
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    private static final class Page {
+        final RemoteViews views;
+        final int bytes;
+
+        Page(RemoteViews views, int bytes) {
+            this.views = views;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * The pages to serve, in order: one per card up to {@link #cardPages}, then the summary page
+     * if any cards were folded.
+     */
+    static final class Pages {
+        static final Pages EMPTY = new Pages(new RemoteViews[0], 0, 0);
+
+        private final RemoteViews[] views;
+        final int cardPages;
+        final int bytes;
+
+        Pages(RemoteViews[] views, int cardPages, int bytes) {
+            this.views = views;
+            this.cardPages = cardPages;
+            this.bytes = bytes;
+        }
+
+        int size() {
+            return views.length;
+        }
+
+        RemoteViews views(int position) {
+            return views[position];
+        }
+    }
+}
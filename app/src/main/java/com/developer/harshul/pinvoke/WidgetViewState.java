@@ -0,0 +1,25 @@
+package com.developer.harshul.pinvoke;
+
+/**
+ * The cards of one widget in display order, as {@link CardViewState}s, and whether they are drawn
+ * as bitmap tiles. Immutable; the array is copied on construction.
+ */
+final class WidgetViewState {
+
+    private final CardViewState[] cards;
+    final boolean tiles;
+
+    WidgetViewState(CardViewState[] cards, int count, boolean tiles) {
+        this.cards = new CardViewState[count];
+        System.arraycopy(cards, 0, this.cards, 0, count);
+        this.tiles = tiles;
+    }
+
+    int size() {
+        return cards.length;
+    }
+
+    CardViewState card(int position) {
+        return cards[position];
+    }
+}
@@ -0,0 +1,77 @@
+package com.developer.harshul.pinvoke;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CardCacheTest {
+
+    private final CardCache cache = new CardCache(2);
+    private final CardBuffer out = new CardBuffer();
+
+    @Test
+    public void update_isReturnedByGet() {
+        cache.update(1, cards("Visa", 10L, "Amex", 20L));
+
+        assertTrue(cache.get(1, out));
+        assertEquals(2, out.size);
+        assertEquals("Amex", out.names[1]);
+        assertEquals(20L, out.dueDates[1]);
+    }
+
+    @Test
+    public void cachedCards_areCopies() {
+        CardBuffer written = cards("Visa", 10L);
+        cache.update(1, written);
+        written.dueDates[0] = 99L;
+
+        assertTrue(cache.get(1, out));
+        assertEquals(10L, out.dueDates[0]);
+    }
+
+    @Test
+    public void leastRecentlyUsed_isEvicted() {
+        cache.update(1, cards("One", 1L));
+        cache.update(2, cards("Two", 2L));
+        assertTrue(cache.get(1, out));
+        cache.update(3, cards("Three", 3L));
+
+        assertTrue(cache.get(1, out));
+        assertFalse(cache.get(2, out));
+        assertTrue(cache.get(3, out));
+    }
+
+    @Test
+    public void staleLoad_isNotCached() {
+        long loadedVersion = cache.version();
+        cache.update(2, cards("Other", 1L));
+        cache.putIfCurrent(1, cards("Stale", 1L), loadedVersion);
+
+        assertFalse(cache.get(1, out));
+    }
+
+    @Test
+    public void currentLoad_isCached() {
+        cache.putIfCurrent(1, cards("Visa", 1L), cache.version());
+
+        assertTrue(cache.get(1, out));
+    }
+
+    @Test
+    public void remove_dropsEntryAndInvalidatesLoadsInFlight() {
+        cache.update(1, cards("Visa", 1L));
+        long loadedVersion = cache.version();
+        cache.remove(1);
+        cache.putIfCurrent(1, cards("Visa", 1L), loadedVersion);
+
+        assertFalse(cache.get(1, out));
+    }
+
+    private static CardBuffer cards(Object... namesAndDueDates) {
+        CardBuffer cards = new CardBuffer();
+        for (int i = 0; i < namesAndDueDates.length; i += 2) {
+            cards.add((String) namesAndDueDates[i], (Long) namesAndDueDates[i + 1]);
+        }
+        return cards;
+    }
+}
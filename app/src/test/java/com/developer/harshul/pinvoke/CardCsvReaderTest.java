@@ -0,0 +1,119 @@
+package com.developer.harshul.pinvoke;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CardCsvReaderTest {
+
+    @Test
+    public void headerAndBlankLines_areSkipped() throws IOException {
+        CardCsvReader reader = new CardCsvReader(new StringReader(CardCsvReader.HEADER + "\r\n\r\n7,Chase,1700000000000\r\n"));
+
+        assertTrue(reader.nextRow());
+        assertTrue(reader.valid);
+        assertEquals(7, reader.widgetId);
+        assertEquals("Chase", reader.name);
+        assertEquals(1700000000000L, reader.dueDate);
+        assertFalse(reader.nextRow());
+    }
+
+    @Test
+    public void quotedFields_keepCommasQuotesAndNewlines() throws IOException {
+        CardCsvReader reader = new CardCsvReader(new StringReader("3,\"Amex, \"\"Gold\"\"\nCard\",1700000000000,extra"));
+
+        assertTrue(reader.nextRow());
+        assertTrue(reader.valid);
+        assertEquals("Amex, \"Gold\"\nCard", reader.name);
+        assertEquals(1700000000000L, reader.dueDate);
+    }
+
+    @Test
+    public void isoDates_areAccepted() throws IOException {
+        CardCsvReader reader = new CardCsvReader(new StringReader("3,Visa,2024-05-15\n"));
+
+        assertTrue(reader.nextRow());
+        assertTrue(reader.valid);
+        assertEquals(DateMath.parseIsoDate("2024-05-15"), reader.dueDate);
+    }
+
+    @Test
+    public void badRows_areInvalidButDoNotStopReading() throws IOException {
+        CardCsvReader reader = new CardCsvReader(new StringReader("x,Visa,1\n3,Visa\n3,Visa,soon\n4,Visa,5\n"));
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(reader.nextRow());
+            assertFalse(reader.valid);
+        }
+        assertTrue(reader.nextRow());
+        assertTrue(reader.valid);
+        assertEquals(4, reader.widgetId);
+    }
+
+    @Test
+    public void importedNames_areTrimmedBeforeTheLengthCheck() throws IOException {
+        StringBuilder longest = new StringBuilder();
+        for (int i = 0; i < CardStore.NAME_CAPACITY; i++) {
+            longest.append('x');
+        }
+        CardCsvReader reader = new CardCsvReader(new StringReader("3,\"  " + longest + "  \",1700000000000\n4,  ,1700000000000\n"));
+
+        assertTrue(reader.nextRow());
+        assertEquals(longest.toString(), CardTransfer.importedName(reader.name, "Card"));
+        assertTrue(reader.nextRow());
+        assertEquals("Card", CardTransfer.importedName(reader.name, "Card"));
+        assertNull(CardTransfer.importedName(longest + "y", "Card"));
+        assertEquals("Visa", CardTransfer.importedName(" Visa\t", "Card"));
+    }
+
+    @Test(expected = IOException.class)
+    public void unterminatedQuote_throws() throws IOException {
+        CardCsvReader reader = new CardCsvReader(new StringReader("3,\"Visa,1\n"));
+        reader.nextRow();
+    }
+
+    @Test
+    public void writtenRows_readBack() throws IOException {
+        String[] names = {"Plain", "Comma, inside", "Quote \" inside", "Line\nbreak", ""};
+        StringWriter out = new StringWriter();
+        out.write(CardCsvReader.HEADER + "\n");
+        for (int i = 0; i < names.length; i++) {
+            CardTransfer.writeCsvRow(out, 10 + i, names[i], 1700000000000L + i);
+        }
+
+        CardCsvReader reader = new CardCsvReader(new StringReader(out.toString()));
+        for (int i = 0; i < names.length; i++) {
+            assertTrue(reader.nextRow());
+            assertTrue(reader.valid);
+            assertEquals(10 + i, reader.widgetId);
+            assertEquals(names[i], reader.name);
+            assertEquals(1700000000000L + i, reader.dueDate);
+        }
+        assertFalse(reader.nextRow());
+    }
+
+    @Test
+    public void writtenJsonRows_readBack() throws IOException {
+        StringWriter out = new StringWriter();
+        out.write('[');
+        CardTransfer.writeJsonRow(out, true, 5, "Tab\there \"quoted\" \\", 1700000000000L);
+        CardTransfer.writeJsonRow(out, false, 6, "Second", 1700000000001L);
+        out.write("\n]\n");
+
+        CardJsonReader reader = new CardJsonReader(new StringReader(out.toString()));
+        reader.beginArray();
+        assertTrue(reader.hasNext());
+        assertTrue(reader.nextCard("", 0));
+        assertEquals(5, reader.widgetId);
+        assertEquals("Tab\there \"quoted\" \\", reader.name);
+        assertTrue(reader.hasNext());
+        assertTrue(reader.nextCard("", 0));
+        assertEquals(6, reader.widgetId);
+        assertEquals(1700000000001L, reader.dueDate);
+        assertFalse(reader.hasNext());
+        reader.endArray();
+    }
+}
@@ -0,0 +1,109 @@
+package com.developer.harshul.pinvoke;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+public class CardJsonReaderTest {
+
+    private static final String DEFAULT_NAME = "Credit Card";
+    private static final long DEFAULT_DUE_DATE = 42L;
+
+    private final CardBuffer cards = new CardBuffer();
+
+    @Test
+    public void readsCardsInOrder() throws IOException {
+        read("[{\"name\":\"Visa\",\"dueDate\":1700000000000},{\"dueDate\":1600000000000,\"name\":\"Amex\"}]");
+
+        assertEquals(2, cards.size);
+        assertEquals("Visa", cards.names[0]);
+        assertEquals(1700000000000L, cards.dueDates[0]);
+        assertEquals("Amex", cards.names[1]);
+        assertEquals(1600000000000L, cards.dueDates[1]);
+    }
+
+    @Test
+    public void missingFields_fallBackToDefaults() throws IOException {
+        read("[{}, {\"name\":\"Visa\"}, {\"dueDate\":7}]");
+
+        assertEquals(3, cards.size);
+        assertEquals(DEFAULT_NAME, cards.names[0]);
+        assertEquals(DEFAULT_DUE_DATE, cards.dueDates[0]);
+        assertEquals(DEFAULT_DUE_DATE, cards.dueDates[1]);
+        assertEquals(DEFAULT_NAME, cards.names[2]);
+        assertEquals(7L, cards.dueDates[2]);
+    }
+
+    @Test
+    public void coercesValuesLikeOptStringAndOptLong() throws IOException {
+        read("[{\"name\":123,\"dueDate\":\"1700000000000\"},"
+                + "{\"name\":null,\"dueDate\":1.7E12},"
+                + "{\"name\":true,\"dueDate\":\"soon\"},"
+                + "{\"name\":{\"nested\":1},\"dueDate\":[1,2]}]");
+
+        assertEquals("123", cards.names[0]);
+        assertEquals(1700000000000L, cards.dueDates[0]);
+        assertEquals("null", cards.names[1]);
+        assertEquals(1700000000000L, cards.dueDates[1]);
+        assertEquals("true", cards.names[2]);
+        assertEquals(DEFAULT_DUE_DATE, cards.dueDates[2]);
+        assertEquals(DEFAULT_NAME, cards.names[3]);
+        assertEquals(DEFAULT_DUE_DATE, cards.dueDates[3]);
+    }
+
+    @Test
+    public void skipsNonObjectElementsAndUnknownKeys() throws IOException {
+        read(" [ 1, \"x\", null, [ {\"name\":\"inner\"} ], "
+                + "{ \"extra\" : { \"a\" : [ 1, { \"b\" : \"}\" } ] }, \"name\" : \"Visa\", \"dueDate\" : 5 } ] ");
+
+        assertEquals(1, cards.size);
+        assertEquals("Visa", cards.names[0]);
+        assertEquals(5L, cards.dueDates[0]);
+    }
+
+    @Test
+    public void decodesEscapes() throws IOException {
+        read("[{\"name\":\"Caf\\u00e9 \\\"Gold\\\" \\\\ \\/\",\"dueDate\":1}]");
+
+        assertEquals("Caf\u00e9 \"Gold\" \\ /", cards.names[0]);
+    }
+
+    @Test
+    public void lastDuplicateKeyWins() throws IOException {
+        read("[{\"name\":\"First\",\"name\":\"Second\",\"dueDate\":1,\"dueDate\":2}]");
+
+        assertEquals("Second", cards.names[0]);
+        assertEquals(2L, cards.dueDates[0]);
+    }
+
+    @Test
+    public void readsInputLargerThanItsBuffer() throws IOException {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 500; i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"name\":\"Card ").append(i).append("\",\"dueDate\":").append(i).append('}');
+        }
+        read(json.append(']').toString());
+
+        assertEquals(500, cards.size);
+        assertEquals("Card 499", cards.names[499]);
+        assertEquals(499L, cards.dueDates[499]);
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedInput_throws() throws IOException {
+        read("[{\"name\":\"Visa\",\"dueDate\":1");
+    }
+
+    @Test(expected = IOException.class)
+    public void nonArrayInput_throws() throws IOException {
+        read("{\"name\":\"Visa\"}");
+    }
+
+    private void read(String json) throws IOException {
+        CardJsonReader.readAll(new StringReader(json), cards, DEFAULT_NAME, DEFAULT_DUE_DATE);
+    }
+}
@@ -0,0 +1,97 @@
+package com.developer.harshul.pinvoke;
+
+import android.content.Context;
+import android.util.SparseArray;
+import androidx.test.core.app.ApplicationProvider;
+import java.util.Arrays;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class CardStoreTest {
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        CardStore.release();
+        context = ApplicationProvider.getApplicationContext();
+    }
+
+    @After
+    public void tearDown() {
+        CardStore.release();
+    }
+
+    @Test
+    public void resavesAndDeletes_surviveReopen() {
+        CardStore store = CardStore.getInstance(context);
+        assertTrue(store.save(1, cards("Visa", 10L, "Amex", 20L, "Discover", 30L)));
+        assertTrue(store.save(2, cards("Chase", 40L, "Citi", 50L)));
+        assertTrue(store.save(3, cards("Apple", 60L, "Capital One", 70L)));
+
+        // Frees slots in the middle of the file, then saves counts that no longer match.
+        store.delete(2);
+        CardBuffer grown = cards("Visa", 11L, "Amex", 21L, "Discover", 31L, "Bilt", 41L);
+        assertTrue(store.save(1, grown));
+        CardBuffer shrunk = cards("Apple", 61L);
+        assertTrue(store.save(3, shrunk));
+        assertTrue(store.save(4, cards("Wells", 80L, "Fargo", 90L)));
+        assertTrue(store.save(4, cards("Wells", 81L, "Fargo", 91L, "Ally", 92L)));
+
+        CardStore.release();
+        store = CardStore.getInstance(context);
+
+        assertCards(store, 1, grown);
+        assertCards(store, 2, new CardBuffer());
+        assertCards(store, 3, shrunk);
+        assertCards(store, 4, cards("Wells", 81L, "Fargo", 91L, "Ally", 92L));
+        assertArrayEquals(new long[]{11L, 21L, 31L, 41L, 61L, 81L, 91L, 92L}, store.dueDates());
+
+        CardBuffer next = new CardBuffer();
+        assertTrue(store.nextDue(42L, next));
+        assertEquals("Apple", next.names[0]);
+        assertEquals(61L, next.dueDates[0]);
+    }
+
+    @Test
+    public void saveAll_changingCardCounts_survivesReopen() {
+        CardStore store = CardStore.getInstance(context);
+        assertTrue(store.save(1, cards("Visa", 10L, "Amex", 20L, "Discover", 30L)));
+        assertTrue(store.save(2, cards("Chase", 40L)));
+
+        SparseArray<CardBuffer> batch = new SparseArray<>();
+        batch.put(1, cards("Visa", 11L, "Amex", 21L));
+        batch.put(2, cards("Chase", 41L, "Citi", 51L, "Apple", 61L));
+        assertTrue(store.saveAll(batch));
+
+        CardStore.release();
+        store = CardStore.getInstance(context);
+
+        assertCards(store, 1, cards("Visa", 11L, "Amex", 21L));
+        assertCards(store, 2, cards("Chase", 41L, "Citi", 51L, "Apple", 61L));
+        assertArrayEquals(new long[]{11L, 21L, 41L, 51L, 61L}, store.dueDates());
+    }
+
+    private static void assertCards(CardStore store, int appWidgetId, CardBuffer expected) {
+        CardBuffer out = new CardBuffer();
+        assertEquals(expected.size, store.load(appWidgetId, out));
+        assertArrayEquals(Arrays.copyOf(expected.names, expected.size), Arrays.copyOf(out.names, out.size));
+        assertArrayEquals(Arrays.copyOf(expected.dueDates, expected.size), Arrays.copyOf(out.dueDates, out.size));
+    }
+
+    private static CardBuffer cards(Object... namesAndDueDates) {
+        CardBuffer cards = new CardBuffer();
+        for (int i = 0; i < namesAndDueDates.length; i += 2) {
+            cards.add((String) namesAndDueDates[i], (Long) namesAndDueDates[i + 1]);
+        }
+        return cards;
+    }
+}
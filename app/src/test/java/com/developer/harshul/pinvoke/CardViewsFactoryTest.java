@@ -0,0 +1,63 @@
+package com.developer.harshul.pinvoke;
+
+import org.junit.Test;
+
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class CardViewsFactoryTest {
+
+    private static final long NOW = 1700000000000L;
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+    private static final long ENVIRONMENT = Fingerprint.newFingerprint();
+
+    @Test
+    public void sameCardNextHour_isUnchanged() {
+        long dueDate = NOW + 5 * DAY + 12 * 3600000L;
+        assertEquals(state("Visa", dueDate, NOW), state("Visa", dueDate, NOW + 3600000L));
+    }
+
+    @Test
+    public void dayTick_changesState() {
+        long dueDate = NOW + 5 * DAY;
+        assertNotEquals(state("Visa", dueDate, NOW), state("Visa", dueDate, NOW + DAY));
+    }
+
+    @Test
+    public void overdueDays_lookTheSame() {
+        long dueDate = NOW - 3 * DAY;
+        assertEquals(state("Visa", dueDate, NOW), state("Visa", dueDate, NOW + 4 * DAY));
+    }
+
+    @Test
+    public void nameSizeClassAndEnvironment_changeState() {
+        long dueDate = NOW + 5 * DAY;
+        long base = state("Visa", dueDate, NOW);
+        assertNotEquals(base, state("Amex", dueDate, NOW));
+        assertNotEquals(base, CardViewsFactory.cardState(ENVIRONMENT, "Visa", dueDate, NOW, SizeClass.COMPACT));
+        assertNotEquals(base, CardViewsFactory.cardState(Fingerprint.mix(ENVIRONMENT, 1), "Visa", dueDate, NOW, SizeClass.REGULAR));
+    }
+
+    @Test
+    public void timeZoneChange_changesState() {
+        TimeZone previous = TimeZone.getDefault();
+        try {
+            TimeZone.setDefault(TimeZone.getTimeZone("America/New_York"));
+            DateMath.refreshTimeZone();
+            long dueDate = NOW + 5 * DAY;
+            long before = state("Visa", dueDate, NOW);
+            TimeZone.setDefault(TimeZone.getTimeZone("Asia/Tokyo"));
+            DateMath.refreshTimeZone();
+            assertNotEquals(before, state("Visa", dueDate, NOW));
+        } finally {
+            TimeZone.setDefault(previous);
+            DateMath.refreshTimeZone();
+        }
+    }
+
+    private static long state(String name, long dueDate, long now) {
+        return CardViewsFactory.cardState(ENVIRONMENT, name, dueDate, now, SizeClass.REGULAR);
+    }
+}
@@ -0,0 +1,222 @@
+package com.developer.harshul.pinvoke;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Property tests checking DateMath against the Calendar/SimpleDateFormat code it replaced.
+ */
+public class DateMathTest {
+
+    private static final String[] ZONES = {
+            "UTC", "America/New_York", "Europe/Berlin", "Asia/Kolkata", "Australia/Lord_Howe", "America/Sao_Paulo"
+    };
+    private static final Locale[] LOCALES = {
+            Locale.US, Locale.FRANCE, Locale.GERMANY, Locale.JAPAN, new Locale("ru", "RU"), new Locale("ar", "EG")
+    };
+    private static final long YEAR_MILLIS = TimeUnit.DAYS.toMillis(366);
+    private static final long BASE_TIME = 1262304000000L; // 2010-01-01T00:00:00Z
+    private static final int SAMPLES = 20000;
+
+    private final TimeZone originalZone = TimeZone.getDefault();
+
+    @After
+    public void restoreTimeZone() {
+        TimeZone.setDefault(originalZone);
+        DateMath.refreshTimeZone();
+    }
+
+    @Test
+    public void civilRoundTrip_matchesForEveryDay() {
+        for (long day = -800000; day <= 800000; day += 7) {
+            int civil = DateMath.civilFromDays(day);
+            assertEquals(day, DateMath.daysFromCivil(DateMath.year(civil), DateMath.month(civil), DateMath.dayOfMonth(civil)));
+        }
+    }
+
+    @Test
+    public void lengthOfMonth_matchesCalendar() {
+        Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        for (int year = 1900; year <= 2400; year++) {
+            for (int month = 1; month <= 12; month++) {
+                cal.clear();
+                cal.set(year, month - 1, 1);
+                assertEquals(year + "-" + month, cal.getActualMaximum(Calendar.DAY_OF_MONTH), DateMath.lengthOfMonth(year, month));
+            }
+        }
+    }
+
+    @Test
+    public void updateOverdueDateToNextMonth_matchesCalendar() {
+        for (String zone : ZONES) {
+            useZone(zone);
+            Random random = new Random(zone.hashCode());
+            for (int i = 0; i < SAMPLES; i++) {
+                long now = BASE_TIME + (long) (random.nextDouble() * 8 * YEAR_MILLIS);
+                long dueDate = now + (long) ((random.nextDouble() - 0.7) * YEAR_MILLIS);
+                assertEquals(zone + " now=" + now + " due=" + dueDate,
+                        legacyUpdateOverdueDateToNextMonth(dueDate, now),
+                        DateMath.updateOverdueDateToNextMonth(dueDate, now));
+            }
+        }
+    }
+
+    @Test
+    public void updateOverdueDateToNextMonth_clampsToShortMonths() {
+        useZone("UTC");
+        long jan31 = DateMath.startOfDay(DateMath.daysFromCivil(2024, 1, 31));
+        long feb10 = DateMath.startOfDay(DateMath.daysFromCivil(2024, 2, 10));
+        long expected = DateMath.startOfDay(DateMath.daysFromCivil(2024, 3, 31));
+        assertEquals(expected, DateMath.updateOverdueDateToNextMonth(jan31, feb10));
+
+        long jan30 = DateMath.startOfDay(DateMath.daysFromCivil(2023, 1, 30));
+        long jan31Now = DateMath.startOfDay(DateMath.daysFromCivil(2023, 1, 31));
+        assertEquals(DateMath.startOfDay(DateMath.daysFromCivil(2023, 2, 28)), DateMath.updateOverdueDateToNextMonth(jan30, jan31Now));
+    }
+
+    @Test
+    public void defaultDueDate_matchesCalendar() {
+        for (String zone : ZONES) {
+            useZone(zone);
+            Random random = new Random(31L * zone.hashCode());
+            for (int i = 0; i < SAMPLES; i++) {
+                long now = BASE_TIME + (long) (random.nextDouble() * 8 * YEAR_MILLIS);
+                assertEquals(zone + " now=" + now, legacyDefaultDueDate(now), DateMath.defaultDueDate(now));
+            }
+        }
+    }
+
+    @Test
+    public void formatMonthDay_matchesSimpleDateFormat() {
+        for (String zone : ZONES) {
+            useZone(zone);
+            for (Locale locale : LOCALES) {
+                SimpleDateFormat formatter = new SimpleDateFormat("MMM dd", locale);
+                Random random = new Random(locale.hashCode() ^ zone.hashCode());
+                for (int i = 0; i < SAMPLES / 10; i++) {
+                    long millis = BASE_TIME + (long) (random.nextDouble() * 8 * YEAR_MILLIS);
+                    assertEquals(zone + " " + locale + " " + millis,
+                            formatter.format(new Date(millis)), DateMath.formatMonthDay(millis, locale));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void formatMonthDay_reusesCachedStrings() {
+        long millis = BASE_TIME + TimeUnit.DAYS.toMillis(40);
+        assertSame(DateMath.formatMonthDay(millis, Locale.US), DateMath.formatMonthDay(millis, Locale.US));
+    }
+
+    @Test
+    public void parseIsoDate_isStartOfLocalDay() {
+        for (String zone : ZONES) {
+            useZone(zone);
+            Calendar expected = Calendar.getInstance();
+            expected.clear();
+            expected.set(2024, Calendar.FEBRUARY, 29);
+            assertEquals(zone, expected.getTimeInMillis(), DateMath.parseIsoDate("2024-02-29"));
+        }
+    }
+
+    @Test
+    public void startOfDay_matchesCalendarAcrossBaseOffsetChanges() {
+        // Apia skipped 2011-12-30, Pyongyang moved its base offset in 2015 and back in 2018 and
+        // Kiritimati moved by a whole day in 1994; Sao Paulo's DST gaps were at midnight.
+        for (String zone : new String[]{"Pacific/Apia", "Asia/Pyongyang", "Pacific/Kiritimati", "America/Sao_Paulo", "America/New_York"}) {
+            useZone(zone);
+            Calendar expected = Calendar.getInstance();
+            for (long day = DateMath.daysFromCivil(1990, 1, 1); day <= DateMath.daysFromCivil(2020, 12, 31); day++) {
+                int civil = DateMath.civilFromDays(day);
+                expected.clear();
+                expected.set(DateMath.year(civil), DateMath.month(civil) - 1, DateMath.dayOfMonth(civil));
+                assertEquals(zone + " " + DateMath.year(civil) + "-" + DateMath.month(civil) + "-" + DateMath.dayOfMonth(civil),
+                        expected.getTimeInMillis(), DateMath.startOfDay(day));
+            }
+        }
+    }
+
+    @Test
+    public void parseIsoDate_rejectsMalformedDates() {
+        assertEquals(Long.MIN_VALUE, DateMath.parseIsoDate("2023-02-29"));
+        assertEquals(Long.MIN_VALUE, DateMath.parseIsoDate("2024-13-01"));
+        assertEquals(Long.MIN_VALUE, DateMath.parseIsoDate("2024/01/01"));
+        assertEquals(Long.MIN_VALUE, DateMath.parseIsoDate("24-01-01"));
+        assertEquals(Long.MIN_VALUE, DateMath.parseIsoDate("2024-0a-01"));
+    }
+
+    @Test
+    public void isPlausibleDueDate_acceptsAboutFiveYearsEitherSide() {
+        long now = BASE_TIME;
+        assertTrue(DateMath.isPlausibleDueDate(now, now));
+        assertTrue(DateMath.isPlausibleDueDate(now + TimeUnit.DAYS.toMillis(5 * 365), now));
+        assertTrue(DateMath.isPlausibleDueDate(now - TimeUnit.DAYS.toMillis(5 * 365), now));
+        assertFalse(DateMath.isPlausibleDueDate(now + TimeUnit.DAYS.toMillis(5 * 365 + 1), now));
+        assertFalse(DateMath.isPlausibleDueDate(0, now));
+        assertFalse(DateMath.isPlausibleDueDate(Long.MIN_VALUE, now));
+    }
+
+    private static void useZone(String zone) {
+        TimeZone.setDefault(TimeZone.getTimeZone(zone));
+        DateMath.refreshTimeZone();
+    }
+
+    // The pre-DateMath implementations, with "now" passed in instead of read from the clock.
+    private static long legacyUpdateOverdueDateToNextMonth(long dueDate, long now) {
+        Calendar currentCal = Calendar.getInstance();
+        currentCal.setTimeInMillis(now);
+        Calendar dueCal = Calendar.getInstance();
+        dueCal.setTimeInMillis(dueDate);
+
+        currentCal.set(Calendar.HOUR_OF_DAY, 0);
+        currentCal.set(Calendar.MINUTE, 0);
+        currentCal.set(Calendar.SECOND, 0);
+        currentCal.set(Calendar.MILLISECOND, 0);
+
+        dueCal.set(Calendar.HOUR_OF_DAY, 0);
+        dueCal.set(Calendar.MINUTE, 0);
+        dueCal.set(Calendar.SECOND, 0);
+        dueCal.set(Calendar.MILLISECOND, 0);
+
+        if (dueCal.before(currentCal)) {
+            int dayOfMonth = dueCal.get(Calendar.DAY_OF_MONTH);
+
+            Calendar nextMonth = Calendar.getInstance();
+            nextMonth.setTimeInMillis(now);
+            nextMonth.add(Calendar.MONTH, 1);
+
+            int maxDay = nextMonth.getActualMaximum(Calendar.DAY_OF_MONTH);
+            if (dayOfMonth > maxDay) {
+                dayOfMonth = maxDay;
+            }
+
+            nextMonth.set(Calendar.DAY_OF_MONTH, dayOfMonth);
+            nextMonth.set(Calendar.HOUR_OF_DAY, 0);
+            nextMonth.set(Calendar.MINUTE, 0);
+            nextMonth.set(Calendar.SECOND, 0);
+            nextMonth.set(Calendar.MILLISECOND, 0);
+
+            return nextMonth.getTimeInMillis();
+        }
+
+        return dueDate;
+    }
+
+    private static long legacyDefaultDueDate(long now) {
+        Calendar cal = Calendar.getInstance();
+        cal.setTimeInMillis(now);
+        cal.add(Calendar.MONTH, 1);
+        cal.set(Calendar.DAY_OF_MONTH, 15);
+        return cal.getTimeInMillis();
+    }
+}
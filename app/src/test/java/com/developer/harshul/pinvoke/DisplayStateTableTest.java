@@ -0,0 +1,36 @@
+package com.developer.harshul.pinvoke;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DisplayStateTableTest {
+
+    @Test
+    public void everyOverdueDay_isOneState() {
+        assertEquals(DisplayStateTable.STATE_OVERDUE, DisplayStateTable.stateOf(-1));
+        assertEquals(DisplayStateTable.STATE_OVERDUE, DisplayStateTable.stateOf(-30));
+    }
+
+    @Test
+    public void dueToday_isTodayState() {
+        assertEquals(DisplayStateTable.STATE_TODAY, DisplayStateTable.stateOf(0));
+    }
+
+    @Test
+    public void tableDays_mapToDistinctStates() {
+        int previous = DisplayStateTable.stateOf(0);
+        for (int days = 1; days <= DisplayStateTable.MAX_TABLE_DAYS; days++) {
+            int state = DisplayStateTable.stateOf(days);
+            assertEquals(previous + 1, state);
+            assertTrue(state < DisplayStateTable.STATE_FAR);
+            previous = state;
+        }
+    }
+
+    @Test
+    public void daysPastTable_shareFarState() {
+        assertEquals(DisplayStateTable.STATE_FAR, DisplayStateTable.stateOf(DisplayStateTable.MAX_TABLE_DAYS + 1));
+        assertEquals(DisplayStateTable.STATE_FAR, DisplayStateTable.stateOf(5 * 365));
+    }
+}
@@ -0,0 +1,69 @@
+package com.developer.harshul.pinvoke;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DueIndexTest {
+
+    @Test
+    public void entries_areSortedByDueDate() {
+        DueIndex index = new DueIndex();
+        index.put(0, 300);
+        index.put(1, 100);
+        index.put(2, 200);
+
+        assertArrayEquals(new long[]{100, 200, 300}, index.dueDates());
+        assertEquals(1, index.slot(0));
+        assertEquals(0, index.slot(2));
+    }
+
+    @Test
+    public void putExistingSlot_movesItsEntry() {
+        DueIndex index = new DueIndex();
+        index.put(0, 100);
+        index.put(1, 200);
+        index.put(0, 300);
+
+        assertEquals(2, index.size());
+        assertArrayEquals(new long[]{200, 300}, index.dueDates());
+        assertEquals(0, index.slot(1));
+    }
+
+    @Test
+    public void remove_dropsOnlyThatSlot() {
+        DueIndex index = new DueIndex();
+        index.put(0, 100);
+        index.put(1, 100);
+        index.put(2, 100);
+        index.remove(1);
+        index.remove(7);
+
+        assertEquals(2, index.size());
+        assertEquals(0, index.slot(0));
+        assertEquals(2, index.slot(1));
+    }
+
+    @Test
+    public void ceiling_findsFirstDueAtOrAfter() {
+        DueIndex index = new DueIndex();
+        for (int slot = 0; slot < 40; slot++) {
+            index.put(slot, slot * 10L);
+        }
+
+        assertEquals(0, index.ceiling(-5));
+        assertEquals(5, index.ceiling(50));
+        assertEquals(6, index.ceiling(51));
+        assertEquals(index.size(), index.ceiling(1000));
+    }
+
+    @Test
+    public void clear_forgetsSlots() {
+        DueIndex index = new DueIndex();
+        index.put(3, 100);
+        index.clear();
+        index.put(3, 100);
+
+        assertEquals(1, index.size());
+    }
+}
@@ -0,0 +1,49 @@
+package com.developer.harshul.pinvoke;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SizeClassTest {
+
+    @Test
+    public void unknownWidth_isRegular() {
+        assertEquals(SizeClass.REGULAR, SizeClass.classify(0));
+    }
+
+    @Test
+    public void narrowWidths_areCompact() {
+        assertEquals(SizeClass.COMPACT, SizeClass.classify(110));
+        assertEquals(SizeClass.COMPACT, SizeClass.classify(179.5f));
+    }
+
+    @Test
+    public void boundaryAndWider_areRegular() {
+        assertEquals(SizeClass.REGULAR, SizeClass.classify(180));
+        assertEquals(SizeClass.REGULAR, SizeClass.classify(400));
+    }
+
+    @Test
+    public void resizeWithinClass_keepsClass() {
+        int previous = SizeClass.classify(120);
+        for (int width = 121; width < 180; width++) {
+            assertEquals(previous, SizeClass.classify(width));
+        }
+    }
+
+    @Test
+    public void wideRegularWidths_useTileLayout() {
+        assertEquals(SizeClass.COMPACT, SizeClass.layoutFor(150));
+        assertEquals(SizeClass.REGULAR, SizeClass.layoutFor(250));
+        assertEquals(SizeClass.WIDE, SizeClass.layoutFor(300));
+        assertEquals(SizeClass.WIDE, SizeClass.layoutFor(400));
+    }
+
+    @Test
+    public void wide_rendersAsRegularWithoutTiles() {
+        assertEquals(SizeClass.REGULAR, SizeClass.rendered(SizeClass.WIDE, false));
+        assertEquals(SizeClass.WIDE, SizeClass.rendered(SizeClass.WIDE, true));
+        assertEquals(SizeClass.COMPACT, SizeClass.rendered(SizeClass.COMPACT, false));
+        assertEquals(SizeClass.REGULAR, SizeClass.rendered(SizeClass.REGULAR, true));
+    }
+}
@@ -0,0 +1,25 @@
+package com.developer.harshul.pinvoke;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TileCacheTest {
+
+    private static final CardViewState CARD = new CardViewState("Visa", "Jan 05", "3", "days", 0xffff9800, 0xffff9800);
+
+    @Test
+    public void key_isStableForEqualStates() {
+        CardViewState same = new CardViewState("Visa", "Jan 05", "3", "days", 0xffff9800, 0xffff9800);
+        assertEquals(TileCache.key(CARD, 800, 200, 0), TileCache.key(same, 800, 200, 0));
+    }
+
+    @Test
+    public void key_changesWithDayThemeAndSize() {
+        String key = TileCache.key(CARD, 800, 200, 0);
+        assertNotEquals(key, TileCache.key(new CardViewState("Visa", "Jan 05", "2", "days", 0xffff9800, 0xffff9800), 800, 200, 0));
+        assertNotEquals(key, TileCache.key(CARD, 800, 200, 32));
+        assertNotEquals(key, TileCache.key(CARD, 600, 200, 0));
+        assertNotEquals(key, TileCache.key(CARD, 800, 150, 0));
+    }
+}
@@ -0,0 +1,61 @@
+package com.developer.harshul.pinvoke;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class UpdateSchedulerTest {
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    @Test
+    public void nextChange_isWhenDaysRemainingTicksOver() {
+        long now = noonOn(2024, Calendar.MARCH, 1);
+        long dueDate = now + 5 * DAY + 3 * HOUR;
+
+        long next = UpdateScheduler.nextDisplayChange(dueDate, now);
+
+        assertEquals(now + 3 * HOUR + 1, next);
+        assertEquals(5, TimeUnit.MILLISECONDS.toDays(dueDate - (next - 1)));
+        assertEquals(4, TimeUnit.MILLISECONDS.toDays(dueDate - next));
+    }
+
+    @Test
+    public void nextChange_onDueDay_isRolloverAtMidnight() {
+        long now = noonOn(2024, Calendar.MARCH, 1);
+        long dueDate = now + 2 * HOUR;
+
+        assertEquals(midnightOf(2024, Calendar.MARCH, 2), UpdateScheduler.nextDisplayChange(dueDate, now));
+    }
+
+    @Test
+    public void nextChange_forOverdueCard_isRolloverAtMidnight() {
+        long dueDate = noonOn(2024, Calendar.MARCH, 1);
+        long now = dueDate + 30 * HOUR;
+
+        assertEquals(midnightOf(2024, Calendar.MARCH, 2), UpdateScheduler.nextDisplayChange(dueDate, now));
+    }
+
+    @Test
+    public void nextChange_isNeverInThePastForFutureDueDates() {
+        long now = noonOn(2024, Calendar.JANUARY, 31);
+        for (long offset = 0; offset < 40 * DAY; offset += 7 * HOUR + 13) {
+            assertTrue(UpdateScheduler.nextDisplayChange(now + offset, now) > now);
+        }
+    }
+
+    private static long noonOn(int year, int month, int day) {
+        return midnightOf(year, month, day) + 12 * HOUR;
+    }
+
+    private static long midnightOf(int year, int month, int day) {
+        Calendar cal = Calendar.getInstance();
+        cal.clear();
+        cal.set(year, month, day);
+        return cal.getTimeInMillis();
+    }
+}
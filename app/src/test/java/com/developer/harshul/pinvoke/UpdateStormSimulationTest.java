@@ -0,0 +1,430 @@
+package com.developer.harshul.pinvoke;
+
+import android.appwidget.AppWidgetManager;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Bundle;
+import android.os.Looper;
+import android.view.View;
+import android.widget.FrameLayout;
+import android.widget.RemoteViews;
+import android.widget.TextView;
+import androidx.test.core.app.ApplicationProvider;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Replays months of daily updates across many widgets against a simulated clock. Each day the
+ * morning update broadcast is delivered twice to {@link CreditCardWidgetProvider}, so the second
+ * one exercises {@link WidgetUpdateQueue}'s coalescing, and on some days a burst of resizes
+ * exercises its debounce. Every card is then read back through {@link CardViewsFactory} the way
+ * the launcher would and compared with dates worked out independently with {@link Calendar}.
+ * Along the way card counts are edited, widgets are deleted and the {@link CardStore} is reopened
+ * as a new process would, checking every stored card.
+ *
+ * <p>Each day's updates, binder calls and wall time are recorded from {@link WidgetMetrics} and
+ * written to {@code build/reports/update-storm.csv}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class UpdateStormSimulationTest {
+
+    private static final int WIDGETS = 40;
+    private static final int DAYS = 120;
+    // Starts just before a leap-year February and runs through the March DST change.
+    private static final int START_YEAR = 2024;
+    private static final int START_MONTH = Calendar.JANUARY;
+    private static final int START_DAY = 25;
+    private static final int[] DUE_DAYS_OF_MONTH = {1, 15, 28, 29, 30, 31};
+    // Card counts change every EDIT_INTERVAL_DAYS, and one widget in DELETE_EVERY_NTH_WIDGET is
+    // removed on DELETE_DAY. The store is reopened after each, and halfway through.
+    private static final int EDIT_INTERVAL_DAYS = 30;
+    private static final int DELETE_DAY = 45;
+    private static final int DELETE_EVERY_NTH_WIDGET = 8;
+    // The first widget is dragged through RESIZE_STEPS widths every RESIZE_INTERVAL_DAYS.
+    private static final int RESIZE_INTERVAL_DAYS = 7;
+    private static final int[] RESIZE_STEPS = {120, 150, 170};
+    private static final long QUEUE_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final File REPORT = new File("build/reports/update-storm.csv");
+
+    private Context context;
+    private AppWidgetManager appWidgetManager;
+    private CreditCardWidgetProvider provider;
+    private TimeZone previousTimeZone;
+    private long now;
+
+    @Before
+    public void setUp() {
+        CardStore.release();
+        previousTimeZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("America/New_York"));
+        DateMath.refreshTimeZone();
+        WidgetClock.setSource(() -> now);
+        context = ApplicationProvider.getApplicationContext();
+        appWidgetManager = AppWidgetManager.getInstance(context);
+        provider = new CreditCardWidgetProvider();
+    }
+
+    @After
+    public void tearDown() {
+        CardStore.release();
+        WidgetClock.setSource(null);
+        TimeZone.setDefault(previousTimeZone);
+        DateMath.refreshTimeZone();
+    }
+
+    @Test
+    public void monthsOfDailyUpdates_rollOverAndOnlyResendWhatChanged() throws Exception {
+        now = localTime(START_YEAR, START_MONTH, START_DAY, 9);
+        ComponentName component = new ComponentName(context, CreditCardWidgetProvider.class);
+        List<Integer> appWidgetIds = new ArrayList<>();
+        List<List<ExpectedCard>> expected = new ArrayList<>();
+        List<CardViewsFactory> factories = new ArrayList<>();
+        CardStore store = CardStore.getInstance(context);
+        for (int w = 0; w < WIDGETS; w++) {
+            int appWidgetId = w + 1;
+            assertTrue(appWidgetManager.bindAppWidgetIdIfAllowed(appWidgetId, component));
+            List<ExpectedCard> widgetCards = new ArrayList<>();
+            for (int c = 0; c < 3; c++) {
+                int dayOfMonth = DUE_DAYS_OF_MONTH[(w + c) % DUE_DAYS_OF_MONTH.length];
+                widgetCards.add(new ExpectedCard("Card " + w + "-" + c, localTime(START_YEAR, START_MONTH, dayOfMonth, 0)));
+            }
+            assertTrue(store.save(appWidgetId, toBuffer(widgetCards)));
+            appWidgetIds.add(appWidgetId);
+            expected.add(widgetCards);
+            CardViewsFactory factory = new CardViewsFactory(context, appWidgetId);
+            factory.onCreate();
+            factories.add(factory);
+        }
+
+        List<Integer> deletedIds = new ArrayList<>();
+        List<DayReport> report = new ArrayList<>();
+        int previousOffset = TimeZone.getDefault().getOffset(now);
+        for (int day = 0; day < DAYS; day++) {
+            String date = new SimpleDateFormat("yyyy-MM-dd", Locale.US).format(new Date(now));
+            boolean edited = day % EDIT_INTERVAL_DAYS == EDIT_INTERVAL_DAYS - 1;
+            if (edited) {
+                editCardCounts(day, appWidgetIds, expected);
+            }
+            boolean deleted = day == DELETE_DAY;
+            if (deleted) {
+                deleteWidgets(appWidgetIds, expected, factories, deletedIds);
+            }
+            boolean resized = day % RESIZE_INTERVAL_DAYS == RESIZE_INTERVAL_DAYS - 1;
+
+            int widgets = appWidgetIds.size();
+            int offset = TimeZone.getDefault().getOffset(now);
+            DayReport today = new DayReport(date, widgets);
+            today.begin();
+            // The morning update and a duplicate delivered before the first has drained.
+            int[] ids = toArray(appWidgetIds);
+            provider.onReceive(context, updateIntent(ids));
+            provider.onReceive(context, updateIntent(ids));
+            today.broadcasts += 2;
+            assertTrue(date, WidgetUpdateQueue.getInstance().awaitIdle(QUEUE_TIMEOUT_MILLIS));
+            if (resized) {
+                for (int width : RESIZE_STEPS) {
+                    provider.onReceive(context, optionsIntent(appWidgetIds.get(0), width));
+                    today.broadcasts++;
+                }
+                shadowOf(Looper.getMainLooper()).idleFor(1, TimeUnit.SECONDS);
+                assertTrue(date, WidgetUpdateQueue.getInstance().awaitIdle(QUEUE_TIMEOUT_MILLIS));
+            }
+            today.end();
+            report.add(today);
+
+            int renders = widgets + (resized ? 1 : 0);
+            assertEquals(date, 0, today.failed);
+            assertEquals(date, renders, today.fullUpdates + today.dataChanged);
+            // Every request is either rendered or merged into one already queued.
+            assertEquals(date, 2 * widgets + (resized ? 1 : 0), today.fullUpdates + today.dataChanged + today.skipped + today.coalesced);
+            assertEquals(date, resized ? RESIZE_STEPS.length - 1 : 0, today.resizesDropped);
+            // The outer layout only depends on the environment, so it is re-sent on the first day
+            // and when DST moves the UTC offset; every other day the cards are refreshed with one
+            // notify per update pass instead of a call per widget.
+            boolean environmentChanged = day == 0 || offset != previousOffset;
+            assertEquals(date, environmentChanged ? widgets : 0, today.fullUpdates);
+            previousOffset = offset;
+            assertTrue(date, today.notifyCalls >= 1);
+            if (!environmentChanged) {
+                assertTrue(date + " " + today.binderCalls() + " binder calls", today.binderCalls() < widgets);
+            }
+
+            for (int w = 0; w < widgets; w++) {
+                for (ExpectedCard card : expected.get(w)) {
+                    card.rollOver(now);
+                }
+                factories.get(w).onDataSetChanged();
+                assertCards(date, appWidgetIds.get(w), factories.get(w), expected.get(w));
+            }
+
+            // Whatever the update pass rolled over must have reached the file, not just the cache.
+            if (edited || deleted || day == DAYS / 2) {
+                CardStore.release();
+                assertStored(date, CardStore.getInstance(context), appWidgetIds, expected, deletedIds);
+            }
+
+            Calendar next = Calendar.getInstance();
+            next.setTimeInMillis(now);
+            next.add(Calendar.DAY_OF_MONTH, 1);
+            now = localTime(next.get(Calendar.YEAR), next.get(Calendar.MONTH), next.get(Calendar.DAY_OF_MONTH), 9);
+        }
+
+        for (CardViewsFactory factory : factories) {
+            factory.onDestroy();
+        }
+        writeReport(report);
+    }
+
+    private static Intent updateIntent(int[] appWidgetIds) {
+        Intent intent = new Intent(AppWidgetManager.ACTION_APPWIDGET_UPDATE);
+        intent.putExtra(AppWidgetManager.EXTRA_APPWIDGET_IDS, appWidgetIds);
+        return intent;
+    }
+
+    private static Intent optionsIntent(int appWidgetId, int minWidthDp) {
+        Bundle options = new Bundle();
+        options.putInt(AppWidgetManager.OPTION_APPWIDGET_MIN_WIDTH, minWidthDp);
+        Intent intent = new Intent(AppWidgetManager.ACTION_APPWIDGET_OPTIONS_CHANGED);
+        intent.putExtra(AppWidgetManager.EXTRA_APPWIDGET_ID, appWidgetId);
+        intent.putExtra(AppWidgetManager.EXTRA_APPWIDGET_OPTIONS, options);
+        return intent;
+    }
+
+    private static void writeReport(List<DayReport> report) throws IOException {
+        File directory = REPORT.getParentFile();
+        assertTrue(directory.isDirectory() || directory.mkdirs());
+        try (PrintWriter out = new PrintWriter(new FileWriter(REPORT))) {
+            out.println("date,widgets,broadcasts,full_updates,data_changed,skipped,coalesced,resizes_dropped,"
+                    + "update_app_widget_calls,notify_calls,wall_ms");
+            for (DayReport day : report) {
+                out.println(day.date + "," + day.widgets + "," + day.broadcasts + "," + day.fullUpdates + ","
+                        + day.dataChanged + "," + day.skipped + "," + day.coalesced + "," + day.resizesDropped + ","
+                        + day.fullUpdates + "," + day.notifyCalls + "," + TimeUnit.NANOSECONDS.toMillis(day.wallNanos));
+            }
+        }
+    }
+
+    // Every third widget gets a card due later this month and every third one after it loses its
+    // last card, so slots are both freed and taken.
+    private void editCardCounts(int day, List<Integer> appWidgetIds, List<List<ExpectedCard>> expected) {
+        CardStore store = CardStore.getInstance(context);
+        Calendar today = Calendar.getInstance();
+        today.setTimeInMillis(now);
+        for (int w = 0; w < appWidgetIds.size(); w++) {
+            List<ExpectedCard> widgetCards = expected.get(w);
+            if (w % 3 == 0) {
+                long dueDate = localTime(today.get(Calendar.YEAR), today.get(Calendar.MONTH), DUE_DAYS_OF_MONTH[(w + day) % DUE_DAYS_OF_MONTH.length], 0);
+                widgetCards.add(new ExpectedCard("Card " + w + "-day" + day, dueDate));
+            } else if (w % 3 == 1 && widgetCards.size() > 1) {
+                widgetCards.remove(widgetCards.size() - 1);
+            } else {
+                continue;
+            }
+            assertTrue(store.save(appWidgetIds.get(w), toBuffer(widgetCards)));
+        }
+    }
+
+    private void deleteWidgets(List<Integer> appWidgetIds, List<List<ExpectedCard>> expected,
+                               List<CardViewsFactory> factories, List<Integer> deletedIds) {
+        List<Integer> removed = new ArrayList<>();
+        for (int w = appWidgetIds.size() - 1; w >= 0; w -= DELETE_EVERY_NTH_WIDGET) {
+            removed.add(appWidgetIds.remove(w));
+            expected.remove(w);
+            factories.remove(w).onDestroy();
+        }
+        for (int appWidgetId : removed) {
+            Intent intent = new Intent(AppWidgetManager.ACTION_APPWIDGET_DELETED);
+            intent.putExtra(AppWidgetManager.EXTRA_APPWIDGET_ID, appWidgetId);
+            provider.onReceive(context, intent);
+        }
+        deletedIds.addAll(removed);
+    }
+
+    private static void assertStored(String date, CardStore store, List<Integer> appWidgetIds,
+                                     List<List<ExpectedCard>> expected, List<Integer> deletedIds) {
+        CardBuffer stored = new CardBuffer();
+        for (int w = 0; w < appWidgetIds.size(); w++) {
+            List<ExpectedCard> widgetCards = expected.get(w);
+            assertEquals(date + " widget " + appWidgetIds.get(w), widgetCards.size(), store.load(appWidgetIds.get(w), stored));
+            for (int i = 0; i < stored.size; i++) {
+                ExpectedCard card = find(widgetCards, stored.names[i]);
+                assertNotNull(date + " unexpected stored card " + stored.names[i], card);
+                assertEquals(date + " " + card.name, card.dueDate.getTimeInMillis(), stored.dueDates[i]);
+            }
+        }
+        for (int appWidgetId : deletedIds) {
+            assertEquals(date + " deleted widget " + appWidgetId, 0, store.load(appWidgetId, stored));
+        }
+    }
+
+    private static CardBuffer toBuffer(List<ExpectedCard> cards) {
+        CardBuffer buffer = new CardBuffer();
+        for (ExpectedCard card : cards) {
+            buffer.add(card.name, card.dueDate.getTimeInMillis());
+        }
+        return buffer;
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+
+    private void assertCards(String date, int appWidgetId, CardViewsFactory factory, List<ExpectedCard> expected) {
+        assertEquals(date, expected.size(), factory.getCount());
+        DisplayStateTable table = DisplayStateTable.get(context);
+        int sizeClass = RenderCache.sizeClass(appWidgetId);
+        SimpleDateFormat monthDay = new SimpleDateFormat("MMM dd", Locale.getDefault());
+        long previousDueDate = Long.MIN_VALUE;
+        for (int position = 0; position < factory.getCount(); position++) {
+            View view = render(factory.getViewAt(position));
+            String name = text(view, R.id.card_name);
+            ExpectedCard card = find(expected, name);
+            assertNotNull(date + " unexpected card " + name, card);
+
+            long dueDate = card.dueDate.getTimeInMillis();
+            assertTrue(date + " " + name + " out of order", dueDate >= previousDueDate);
+            previousDueDate = dueDate;
+
+            int daysRemaining = CreditCardWidgetProvider.daysRemaining(dueDate, now);
+            int state = DisplayStateTable.stateOf(daysRemaining);
+            assertTrue(date + " " + name + " still overdue", state != DisplayStateTable.STATE_OVERDUE);
+            assertEquals(date + " " + name, monthDay.format(card.dueDate.getTime()), text(view, R.id.due_date));
+            assertEquals(date + " " + name, table.text(state, sizeClass, daysRemaining), text(view, R.id.days_remaining));
+            assertEquals(date + " " + name, table.label(state), text(view, R.id.days_label));
+        }
+    }
+
+    private View render(RemoteViews views) {
+        return views.apply(context, new FrameLayout(context));
+    }
+
+    private static String text(View view, int id) {
+        return ((TextView) view.findViewById(id)).getText().toString();
+    }
+
+    private static ExpectedCard find(List<ExpectedCard> cards, String name) {
+        for (ExpectedCard card : cards) {
+            if (card.name.equals(name)) {
+                return card;
+            }
+        }
+        return null;
+    }
+
+    private static long localTime(int year, int month, int dayOfMonth, int hourOfDay) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month, 1, hourOfDay, 0);
+        calendar.set(Calendar.DAY_OF_MONTH, Math.min(dayOfMonth, calendar.getActualMaximum(Calendar.DAY_OF_MONTH)));
+        return calendar.getTimeInMillis();
+    }
+
+    // One day of the simulation, as differences in the process-wide WidgetMetrics counters. A full
+    // update is one updateAppWidget call.
+    private static final class DayReport {
+        final String date;
+        final int widgets;
+        int broadcasts;
+        long fullUpdates;
+        long dataChanged;
+        long skipped;
+        long coalesced;
+        long resizesDropped;
+        long notifyCalls;
+        long failed;
+        long wallNanos;
+        private final long[] start = new long[7];
+
+        DayReport(String date, int widgets) {
+            this.date = date;
+            this.widgets = widgets;
+        }
+
+        void begin() {
+            long[] counts = counts();
+            System.arraycopy(counts, 0, start, 0, counts.length);
+            wallNanos = System.nanoTime();
+        }
+
+        void end() {
+            wallNanos = System.nanoTime() - wallNanos;
+            long[] counts = counts();
+            fullUpdates = counts[0] - start[0];
+            dataChanged = counts[1] - start[1];
+            skipped = counts[2] - start[2];
+            coalesced = counts[3] - start[3];
+            resizesDropped = counts[4] - start[4];
+            notifyCalls = counts[5] - start[5];
+            failed = counts[6] - start[6];
+        }
+
+        long binderCalls() {
+            return fullUpdates + notifyCalls;
+        }
+
+        private static long[] counts() {
+            return new long[]{
+                    WidgetMetrics.count(WidgetMetrics.FULL_UPDATES),
+                    WidgetMetrics.count(WidgetMetrics.DATA_CHANGES),
+                    WidgetMetrics.count(WidgetMetrics.WIDGETS_SKIPPED),
+                    WidgetMetrics.count(WidgetMetrics.REQUESTS_COALESCED),
+                    WidgetMetrics.count(WidgetMetrics.RESIZES_DROPPED),
+                    WidgetMetrics.count(WidgetMetrics.NOTIFY_CALLS),
+                    WidgetMetrics.count(WidgetMetrics.ERROR_STATES) + WidgetMetrics.count(WidgetMetrics.FALLBACKS)
+                            + WidgetMetrics.count(WidgetMetrics.RENDER_TIMEOUTS)
+            };
+        }
+    }
+
+    // The rollover rule written out with Calendar: a card due before today moves to the same day
+    // of the month after the current one, clamped to that month's length.
+    private static final class ExpectedCard {
+        final String name;
+        final Calendar dueDate;
+
+        ExpectedCard(String name, long dueDate) {
+            this.name = name;
+            this.dueDate = Calendar.getInstance();
+            this.dueDate.setTimeInMillis(dueDate);
+        }
+
+        void rollOver(long currentTime) {
+            Calendar today = Calendar.getInstance();
+            today.setTimeInMillis(currentTime);
+            Calendar startOfToday = Calendar.getInstance();
+            startOfToday.clear();
+            startOfToday.set(today.get(Calendar.YEAR), today.get(Calendar.MONTH), today.get(Calendar.DAY_OF_MONTH));
+            if (!dueDate.before(startOfToday)) {
+                return;
+            }
+            int dayOfMonth = dueDate.get(Calendar.DAY_OF_MONTH);
+            startOfToday.add(Calendar.MONTH, 1);
+            dueDate.setTimeInMillis(localTime(startOfToday.get(Calendar.YEAR), startOfToday.get(Calendar.MONTH), dayOfMonth, 0));
+        }
+    }
+}
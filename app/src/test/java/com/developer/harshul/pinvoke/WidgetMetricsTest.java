@@ -0,0 +1,40 @@
+package com.developer.harshul.pinvoke;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class WidgetMetricsTest {
+
+    @Test
+    public void bucketBounds_containTheirValues() {
+        for (long value = 0; value < 1000000; value = value * 3 / 2 + 1) {
+            int index = WidgetMetrics.Histogram.indexOf(value);
+            assertTrue(value + " above bucket", value <= WidgetMetrics.Histogram.highestValueIn(index));
+            if (index > 0) {
+                assertTrue(value + " below bucket", value > WidgetMetrics.Histogram.highestValueIn(index - 1));
+            }
+        }
+    }
+
+    @Test
+    public void percentiles_areWithinBucketPrecision() {
+        WidgetMetrics.Histogram histogram = new WidgetMetrics.Histogram();
+        for (long value = 1; value <= 1000; value++) {
+            histogram.record(value);
+        }
+
+        assertEquals(1000, histogram.count());
+        assertEquals(1000, histogram.max());
+        assertEquals(500, histogram.percentile(0.5), 500 * 0.125);
+        assertEquals(990, histogram.percentile(0.99), 990 * 0.125);
+        assertEquals(1000, histogram.percentile(1.0));
+    }
+
+    @Test
+    public void emptyHistogram_reportsZero() {
+        WidgetMetrics.Histogram histogram = new WidgetMetrics.Histogram();
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.percentile(0.5));
+    }
+}
@@ -0,0 +1,22 @@
+package com.developer.harshul.pinvoke;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class WidgetUpdateQueueTest {
+
+    @Test
+    public void retryDelay_doublesFromThirtySeconds() {
+        assertEquals(TimeUnit.SECONDS.toMillis(30), WidgetUpdateQueue.retryDelay(0));
+        assertEquals(TimeUnit.MINUTES.toMillis(1), WidgetUpdateQueue.retryDelay(1));
+        assertEquals(TimeUnit.MINUTES.toMillis(2), WidgetUpdateQueue.retryDelay(2));
+    }
+
+    @Test
+    public void retryDelay_isCapped() {
+        assertEquals(TimeUnit.MINUTES.toMillis(30), WidgetUpdateQueue.retryDelay(6));
+        assertEquals(TimeUnit.MINUTES.toMillis(30), WidgetUpdateQueue.retryDelay(Integer.MAX_VALUE));
+    }
+}
@@ -0,0 +1,60 @@
+package com.developer.harshul.pinvoke;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class WidgetViewRendererTest {
+
+    @Test
+    public void fit_keepsEverythingWithinBudget() {
+        int[] pages = {1000, 1000, 1000};
+        assertEquals(3, WidgetViewRenderer.fit(pages, 3, 900, 3000));
+    }
+
+    @Test
+    public void fit_leavesRoomForSummary() {
+        int[] pages = {1000, 1000, 1000, 1000};
+        assertEquals(2, WidgetViewRenderer.fit(pages, 4, 900, 3000));
+        assertEquals(1, WidgetViewRenderer.fit(pages, 4, 900, 2000));
+    }
+
+    @Test
+    public void fit_alwaysKeepsNearestCard() {
+        int[] pages = {5000, 1000};
+        assertEquals(1, WidgetViewRenderer.fit(pages, 2, 900, 3000));
+    }
+
+    @Test
+    public void collapsed_shortensOnlyLongNames() {
+        CardViewState shortName = new CardViewState("Visa", "Jan 01", "3", "days", 0, 0);
+        assertSame(shortName, shortName.collapsed());
+
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            name.append("Sapphire ");
+        }
+        CardViewState collapsed = new CardViewState(name.toString(), "Jan 01", "3", "days", 0, 0).collapsed();
+        assertEquals(CardViewState.COLLAPSED_NAME_CHARS + 3, collapsed.name.length());
+        assertEquals("3", collapsed.days);
+    }
+
+    @Test
+    public void viewStates_compareByValue() {
+        CardViewState state = new CardViewState("Visa", "Jan 01", "3", "days", 0xff00ff00, 0xff00ff00);
+        assertEquals(state, new CardViewState("Visa", "Jan 01", "3", "days", 0xff00ff00, 0xff00ff00));
+        assertEquals(state.hashCode(), new CardViewState("Visa", "Jan 01", "3", "days", 0xff00ff00, 0xff00ff00).hashCode());
+        assertNotEquals(state, new CardViewState("Visa", "Jan 01", "2", "days", 0xff00ff00, 0xff00ff00));
+        assertNotEquals(state, state.withName("+2 more"));
+        assertNotEquals(state, new CardViewState("Visa", "Jan 01", "3", "days", 0xff00ff00, 0xff008000));
+    }
+
+    @Test
+    public void color_picksVariantForTheme() {
+        CardViewState state = new CardViewState("Visa", "Jan 01", "3", "days", 0xff00ff00, 0xff008000);
+        assertEquals(0xff00ff00, state.color(false));
+        assertEquals(0xff008000, state.color(true));
+        assertEquals(0xff008000, state.withName("+2 more").color(true));
+        assertEquals(0xff008000, state.collapsed().color(true));
+    }
+}
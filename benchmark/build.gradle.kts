@@ -0,0 +1,29 @@
+plugins {
+    `java-library`
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+// Android-free hot-path classes are compiled straight from the app sources, so the benchmarks
+// measure exactly what ships.
+sourceSets {
+    main {
+        java {
+            srcDir("../app/src/main/java")
+            include("com/developer/harshul/pinvoke/DateMath.java")
+            include("com/developer/harshul/pinvoke/CardBuffer.java")
+            include("com/developer/harshul/pinvoke/CardJsonReader.java")
+        }
+    }
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    profilers.add("gc")
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+}
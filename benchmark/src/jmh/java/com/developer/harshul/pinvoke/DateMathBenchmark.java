@@ -0,0 +1,131 @@
+package com.developer.harshul.pinvoke;
+
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares DateMath with the Calendar/SimpleDateFormat code the widget used per card. Run with
+ * {@code ./gradlew :benchmark:jmh}; the gc profiler reports allocation per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DateMathBenchmark {
+
+    @Param({"1", "10"})
+    public int cards;
+
+    private long now;
+    private long[] dueDates;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        now = System.currentTimeMillis();
+        dueDates = new long[cards];
+        for (int i = 0; i < cards; i++) {
+            dueDates[i] = now + (long) ((random.nextDouble() - 0.5) * TimeUnit.DAYS.toMillis(60));
+        }
+    }
+
+    @Benchmark
+    public void rollover_calendar(Blackhole blackhole) {
+        for (long dueDate : dueDates) {
+            blackhole.consume(legacyUpdateOverdueDateToNextMonth(dueDate, now));
+        }
+    }
+
+    @Benchmark
+    public void rollover_dateMath(Blackhole blackhole) {
+        for (long dueDate : dueDates) {
+            blackhole.consume(DateMath.updateOverdueDateToNextMonth(dueDate, now));
+        }
+    }
+
+    @Benchmark
+    public void format_simpleDateFormat(Blackhole blackhole) {
+        for (long dueDate : dueDates) {
+            SimpleDateFormat dateFormatter = new SimpleDateFormat("MMM dd", Locale.getDefault());
+            blackhole.consume(dateFormatter.format(new Date(dueDate)));
+        }
+    }
+
+    @Benchmark
+    public void format_dateMath(Blackhole blackhole) {
+        for (long dueDate : dueDates) {
+            blackhole.consume(DateMath.formatMonthDay(dueDate, Locale.getDefault()));
+        }
+    }
+
+    @Benchmark
+    public long defaultDueDate_calendar() {
+        Calendar cal = Calendar.getInstance();
+        cal.add(Calendar.MONTH, 1);
+        cal.set(Calendar.DAY_OF_MONTH, 15);
+        return cal.getTimeInMillis();
+    }
+
+    @Benchmark
+    public long defaultDueDate_dateMath() {
+        return DateMath.defaultDueDate(now);
+    }
+
+    static long legacyUpdateOverdueDateToNextMonth(long dueDate, long now) {
+        Calendar currentCal = Calendar.getInstance();
+        currentCal.setTimeInMillis(now);
+        Calendar dueCal = Calendar.getInstance();
+        dueCal.setTimeInMillis(dueDate);
+
+        currentCal.set(Calendar.HOUR_OF_DAY, 0);
+        currentCal.set(Calendar.MINUTE, 0);
+        currentCal.set(Calendar.SECOND, 0);
+        currentCal.set(Calendar.MILLISECOND, 0);
+
+        dueCal.set(Calendar.HOUR_OF_DAY, 0);
+        dueCal.set(Calendar.MINUTE, 0);
+        dueCal.set(Calendar.SECOND, 0);
+        dueCal.set(Calendar.MILLISECOND, 0);
+
+        if (dueCal.before(currentCal)) {
+            int dayOfMonth = dueCal.get(Calendar.DAY_OF_MONTH);
+
+            Calendar nextMonth = Calendar.getInstance();
+            nextMonth.setTimeInMillis(now);
+            nextMonth.add(Calendar.MONTH, 1);
+
+            int maxDay = nextMonth.getActualMaximum(Calendar.DAY_OF_MONTH);
+            if (dayOfMonth > maxDay) {
+                dayOfMonth = maxDay;
+            }
+
+            nextMonth.set(Calendar.DAY_OF_MONTH, dayOfMonth);
+            nextMonth.set(Calendar.HOUR_OF_DAY, 0);
+            nextMonth.set(Calendar.MINUTE, 0);
+            nextMonth.set(Calendar.SECOND, 0);
+            nextMonth.set(Calendar.MILLISECOND, 0);
+
+            return nextMonth.getTimeInMillis();
+        }
+
+        return dueDate;
+    }
+}
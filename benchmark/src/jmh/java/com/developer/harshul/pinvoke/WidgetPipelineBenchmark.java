@@ -0,0 +1,110 @@
+package com.developer.harshul.pinvoke;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * One update pass over {@code widgets} widgets of {@code cards} cards each, split into the stages
+ * the provider runs per widget: decoding the legacy JSON, loading and rolling over due dates, and
+ * computing what each card displays. Every operation covers all widgets, so results compare
+ * directly across the widget-count parameter.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WidgetPipelineBenchmark {
+
+    private static final String DEFAULT_NAME = "Credit Card";
+
+    @Param({"1", "10", "50"})
+    public int widgets;
+
+    @Param({"1", "5", "10"})
+    public int cards;
+
+    private long now;
+    private String[] json;
+    private String[][] names;
+    private long[][] dueDates;
+    private final CardBuffer buffer = new CardBuffer();
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        now = System.currentTimeMillis();
+        json = new String[widgets];
+        names = new String[widgets][cards];
+        dueDates = new long[widgets][cards];
+        for (int w = 0; w < widgets; w++) {
+            StringBuilder builder = new StringBuilder("[");
+            for (int c = 0; c < cards; c++) {
+                names[w][c] = "Card " + w + "-" + c;
+                // A quarter of the cards are overdue, so the rollover path runs too.
+                dueDates[w][c] = now + (long) ((random.nextDouble() - 0.25) * TimeUnit.DAYS.toMillis(40));
+                if (c > 0) builder.append(',');
+                builder.append("{\"name\":\"").append(names[w][c]).append("\",\"dueDate\":").append(dueDates[w][c]).append('}');
+            }
+            json[w] = builder.append(']').toString();
+        }
+    }
+
+    @Benchmark
+    public int parse() throws IOException {
+        int total = 0;
+        for (int w = 0; w < widgets; w++) {
+            total += CardJsonReader.readAll(new StringReader(json[w]), buffer, DEFAULT_NAME, now);
+        }
+        return total;
+    }
+
+    @Benchmark
+    public void process(Blackhole blackhole) {
+        for (int w = 0; w < widgets; w++) {
+            load(w);
+            blackhole.consume(buffer.order[0]);
+        }
+    }
+
+    @Benchmark
+    public void compose(Blackhole blackhole) {
+        Locale locale = Locale.getDefault();
+        for (int w = 0; w < widgets; w++) {
+            load(w);
+            for (int i = 0; i < buffer.size; i++) {
+                int index = buffer.order[i];
+                long dueDate = buffer.dueDates[index];
+                blackhole.consume(buffer.names[index]);
+                blackhole.consume(DateMath.formatMonthDay(dueDate, locale));
+                blackhole.consume((int) TimeUnit.MILLISECONDS.toDays(dueDate - now));
+            }
+        }
+    }
+
+    // CreditCardWidgetProvider.loadCards with the store read replaced by array copies; the
+    // rollover and sort are the provider's own.
+    private void load(int widget) {
+        buffer.clear();
+        for (int c = 0; c < cards; c++) {
+            buffer.add(names[widget][c], dueDates[widget][c]);
+        }
+        buffer.rollOverAndSort(now);
+    }
+}
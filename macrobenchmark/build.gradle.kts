@@ -0,0 +1,44 @@
+plugins {
+    alias(libs.plugins.androidTest)
+}
+
+android {
+    namespace = "com.developer.harshul.pinvoke.macrobenchmark"
+    compileSdk = 34
+
+    defaultConfig {
+        minSdk = 30
+        targetSdk = 34
+
+        testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
+    }
+
+    buildTypes {
+        // Mirrors the app's benchmark build type so the target is installed release-like.
+        create("benchmark") {
+            isDebuggable = true
+            signingConfig = signingConfigs.getByName("debug")
+            matchingFallbacks += listOf("release")
+        }
+    }
+
+    compileOptions {
+        sourceCompatibility = JavaVersion.VERSION_1_8
+        targetCompatibility = JavaVersion.VERSION_1_8
+    }
+
+    targetProjectPath = ":app"
+    experimentalProperties["android.experimental.self-instrumenting"] = true
+}
+
+dependencies {
+    implementation(libs.ext.junit)
+    implementation(libs.uiautomator)
+    implementation(libs.benchmark.macro.junit4)
+}
+
+androidComponents {
+    beforeVariants(selector().all()) {
+        it.enable = it.buildType == "benchmark"
+    }
+}
@@ -0,0 +1,41 @@
+package com.developer.harshul.pinvoke.macrobenchmark;
+
+import androidx.benchmark.macro.junit4.BaselineProfileRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import kotlin.Unit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Records the methods run by a widget update broadcast and by opening the configure screen.
+ * Run {@code ./gradlew :macrobenchmark:connectedBenchmarkAndroidTest
+ * -Pandroid.testInstrumentationRunnerArguments.class=com.developer.harshul.pinvoke.macrobenchmark.BaselineProfileGenerator}
+ * on a rooted device or emulator, then copy the generated {@code -baseline-prof.txt} to
+ * {@code app/src/main/baseline-prof.txt}. The app ships no profile until one has been generated
+ * this way, so the benchmarks only compare uncompiled and fully compiled runs.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BaselineProfileGenerator {
+
+    @Rule
+    public BaselineProfileRule baselineProfileRule = new BaselineProfileRule();
+
+    @Test
+    public void generate() {
+        baselineProfileRule.collect(
+                Targets.PACKAGE_NAME,
+                15,
+                3,
+                null,
+                true,
+                false,
+                method -> method.startsWith("Lcom/developer/harshul/pinvoke/"),
+                scope -> {
+                    Targets.broadcastUpdate(scope);
+                    scope.killProcess();
+                    scope.startActivityAndWait(Targets.configIntent());
+                    return Unit.INSTANCE;
+                });
+    }
+}
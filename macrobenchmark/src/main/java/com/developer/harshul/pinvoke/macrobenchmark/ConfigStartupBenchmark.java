@@ -0,0 +1,55 @@
+package com.developer.harshul.pinvoke.macrobenchmark;
+
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.StartupTimingMetric;
+import androidx.benchmark.macro.TraceSectionMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.util.Arrays;
+import kotlin.Unit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Cold start of the widget configure screen, from process start to the card list being bound.
+ * Run with {@code ./gradlew :macrobenchmark:connectedBenchmarkAndroidTest} on a physical device;
+ * timeToFullDisplay ends at the activity's {@code reportFullyDrawn()}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ConfigStartupBenchmark {
+
+    @Rule
+    public MacrobenchmarkRule benchmarkRule = new MacrobenchmarkRule();
+
+    @Test
+    public void coldStartNoCompilation() {
+        measureColdStart(new CompilationMode.None());
+    }
+
+    @Test
+    public void coldStartFullCompilation() {
+        measureColdStart(new CompilationMode.Full());
+    }
+
+    private void measureColdStart(CompilationMode compilationMode) {
+        benchmarkRule.measureRepeated(
+                Targets.PACKAGE_NAME,
+                Arrays.asList(
+                        new StartupTimingMetric(),
+                        new TraceSectionMetric("ccwidget:config_load"),
+                        new TraceSectionMetric("ccwidget:config_bind")),
+                compilationMode,
+                StartupMode.COLD,
+                10,
+                scope -> {
+                    scope.pressHome();
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    scope.startActivityAndWait(Targets.configIntent());
+                    return Unit.INSTANCE;
+                });
+    }
+}
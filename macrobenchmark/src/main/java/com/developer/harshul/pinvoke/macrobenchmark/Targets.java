@@ -0,0 +1,35 @@
+package com.developer.harshul.pinvoke.macrobenchmark;
+
+import android.appwidget.AppWidgetManager;
+import android.content.Intent;
+import android.os.SystemClock;
+import androidx.benchmark.macro.MacrobenchmarkScope;
+
+/** Package, components and launch helpers shared by the benchmarks and the profile generator. */
+final class Targets {
+
+    static final String PACKAGE_NAME = "com.developer.harshul.pinvoke";
+    // Any id works: the configure screen only rejects INVALID_APPWIDGET_ID, and the provider runs
+    // the whole update pass for unbound ids before the launcher ignores the result.
+    static final int WIDGET_ID = 1;
+    // Upper bound on one update pass including the store flush; the queue's own deadline is 8s
+    // but a single widget finishes well inside this.
+    private static final long UPDATE_SETTLE_MS = 2000;
+
+    private Targets() {
+    }
+
+    static Intent configIntent() {
+        return new Intent()
+                .setClassName(PACKAGE_NAME, PACKAGE_NAME + ".CreditCardWidgetConfigActivity")
+                .putExtra(AppWidgetManager.EXTRA_APPWIDGET_ID, WIDGET_ID);
+    }
+
+    // The provider is exported, so the shell can deliver the same broadcast the launcher sends.
+    static void broadcastUpdate(MacrobenchmarkScope scope) {
+        scope.getDevice().executeShellCommand("am broadcast -a " + AppWidgetManager.ACTION_APPWIDGET_UPDATE
+                + " -n " + PACKAGE_NAME + "/.CreditCardWidgetProvider"
+                + " --eia " + AppWidgetManager.EXTRA_APPWIDGET_IDS + " " + WIDGET_ID);
+        SystemClock.sleep(UPDATE_SETTLE_MS);
+    }
+}
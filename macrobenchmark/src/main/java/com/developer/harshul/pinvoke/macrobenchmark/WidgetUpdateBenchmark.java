@@ -0,0 +1,52 @@
+package com.developer.harshul.pinvoke.macrobenchmark;
+
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.TraceSectionMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.util.Arrays;
+import kotlin.Unit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Latency of a widget update broadcast delivered to a freshly spawned process, interpreted and
+ * fully compiled. Compare {@code ccwidget:update_passMs} between the two tests.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WidgetUpdateBenchmark {
+
+    @Rule
+    public MacrobenchmarkRule benchmarkRule = new MacrobenchmarkRule();
+
+    @Test
+    public void coldUpdateNoCompilation() {
+        measureColdUpdate(new CompilationMode.None());
+    }
+
+    @Test
+    public void coldUpdateFullCompilation() {
+        measureColdUpdate(new CompilationMode.Full());
+    }
+
+    private void measureColdUpdate(CompilationMode compilationMode) {
+        benchmarkRule.measureRepeated(
+                Targets.PACKAGE_NAME,
+                Arrays.asList(
+                        new TraceSectionMetric("ccwidget:update_pass"),
+                        new TraceSectionMetric("ccwidget:store_read"),
+                        new TraceSectionMetric("ccwidget:binder")),
+                compilationMode,
+                null,
+                10,
+                scope -> {
+                    scope.killProcess();
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    Targets.broadcastUpdate(scope);
+                    return Unit.INSTANCE;
+                });
+    }
+}